@@ -25,9 +25,7 @@
 package tech.lity.rea.skatolo;
 
 import tech.lity.rea.skatolo.gui.Label;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import processing.core.PApplet;
 import processing.core.PFont;
@@ -51,6 +49,12 @@ public class ControlFont {
 	 */
 	public static boolean RENDER_2X;
 
+	/**
+	 * labels are rendered from a GlyphAtlas as a single batch of textured quads when an OpenGL renderer is used. set USE_GLYPH_ATLAS to
+	 * false to render labels with PGraphics.text() instead. use: ControlFont.USE_GLYPH_ATLAS = false;
+	 */
+	public static boolean USE_GLYPH_ATLAS = true;
+
 	/**
 	 * renders a PFont twice for better and sharper readability
 	 */
@@ -67,9 +71,28 @@ public class ControlFont {
 
 	PFont pfont;
 
-	List<String> txt;
+	// characters of a multiline label, lines are drawn directly from this
+	// buffer by range, see wrap(PGraphics, float).
+	private char[] chars = new char[0];
+
+	private int charCount;
+
+	// line break offsets of a multiline label, line i starts at lines[i*2]
+	// (inclusive) and ends at lines[i*2+1] (exclusive).
+	private int[] lines = new int[16];
+
+	private int lineCount;
+
+	// characters of a singleline label rendered from the glyph atlas.
+	private char[] run = new char[0];
+
+	private GlyphAtlas atlas;
+
+	private ControlFontMetrics metrics;
+
+	private int firstVisibleLine;
 
-	String s = "";
+	private int visibleLineCount;
 
 	private int top;
 
@@ -100,7 +123,6 @@ public class ControlFont {
 	public ControlFont(PFont theFont, int theFontSize, int theLineHeight) {
 		pfont = theFont;
 		size = theFontSize;
-		txt = new ArrayList<String>();
 	}
 
 	static private int checkFontSize(PFont theFont) {
@@ -124,6 +146,7 @@ public class ControlFont {
 
 	public void setSize(int theSize) {
 		size = theSize;
+		metrics = null;
 	}
 
 	public int getSize() {
@@ -170,64 +193,12 @@ public class ControlFont {
 	}
 
 	public void adjust(PApplet theApplet, Label theLabel) {
-		if (theLabel.isChanged()) {
-			theApplet.textFont(pfont, size);
-			// the origin of a PFont Label is top left corner, therefore
-			// the following the following measures have to be calculated
-			// when a font is changed. we have to do that here since PApplet
-			// is required to calculate a font's ascent and descent value.
-			// values are calculated based on the baseline (which is 0),
-			// therefore center and top are negative values.
-			// to order to sync the line height with the height of the font,
-			// the value of lineHeightOffset carries this offset value.
-			// This becomes necessary when working with multiple lines.
-			top = -(int) theApplet.textAscent();
-			bottom = (int) theApplet.textDescent();
-			center = -(int) ((-top - bottom) / 2);
-			height = theLabel.isMultiline() ? theLabel.getHeight() : (int) (theApplet.textAscent() + theApplet.textDescent());
-			width = theLabel.isMultiline() ? theLabel.getWidth() : (int) theApplet.textWidth(theLabel.getTextFormatted());
-			if (theLabel.isMultiline()) {
-				calculateHeight(theApplet, theLabel);
-			}
-			theLabel.setChanged(false);
-		}
+		adjust(theApplet.g, theLabel);
 	}
 
-	private void calculateHeight(PApplet theApplet, Label theLabel) {
-		txt.clear();
-		String myString = theLabel.getTextFormatted();
-		List<String> paragraphs = Arrays.asList(myString.split("\n"));
-		// does not recognize linebreaks at the end of theString.
-		myString = "";
-		for (String p : paragraphs) {
-			List<String> words = Arrays.asList(p.split("\\s"));
-			for (String w : words) {
-				if (theApplet.textWidth(myString + w) < width) {
-					myString += w + " ";
-				} else {
-					txt.add(myString.substring(0, PApplet.max(0, myString.length() - 1)));
-					myString = w + " ";
-				}
-			}
-			txt.add(myString.substring(0, myString.length() - 1));
-			myString = "";
-		}
-		if (theLabel.getHeight() % theLabel.getLineHeight() != 0) {
-			txt.add("");
-		}
-		textHeight = (PApplet.round(txt.size() * theLabel.getLineHeight()));
-		int maxLineNum = PApplet.round(theLabel.getHeight() / theLabel.getLineHeight());
-		int offset = (int) (PApplet.max(0, txt.size() - maxLineNum) * (PApplet.abs(theLabel.getOffsetYratio())));
-		int lim = PApplet.min(txt.size(), maxLineNum);
-		s = "";
-		for (int i = 0; i < lim; i++) {
-			s += txt.get(i + offset) + "\n";
-		}
-	}
-        
 	public void adjust(PGraphics graphics, Label theLabel) {
 		if (theLabel.isChanged()) {
-			graphics.textFont(pfont, size);
+			ControlFontMetrics m = getMetrics(graphics);
 			// the origin of a PFont Label is top left corner, therefore
 			// the following the following measures have to be calculated
 			// when a font is changed. we have to do that here since PGraphics
@@ -237,11 +208,11 @@ public class ControlFont {
 			// to order to sync the line height with the height of the font,
 			// the value of lineHeightOffset carries this offset value.
 			// This becomes necessary when working with multiple lines.
-			top = -(int) graphics.textAscent();
-			bottom = (int) graphics.textDescent();
+			top = -(int) m.getAscent();
+			bottom = (int) m.getDescent();
 			center = -(int) ((-top - bottom) / 2);
-			height = theLabel.isMultiline() ? theLabel.getHeight() : (int) (graphics.textAscent() + graphics.textDescent());
-			width = theLabel.isMultiline() ? theLabel.getWidth() : (int) graphics.textWidth(theLabel.getTextFormatted());
+			height = theLabel.isMultiline() ? theLabel.getHeight() : (int) (m.getAscent() + m.getDescent());
+			width = theLabel.isMultiline() ? theLabel.getWidth() : (int) textWidth(graphics, theLabel.getTextFormatted());
 			if (theLabel.isMultiline()) {
 				calculateHeight(graphics, theLabel);
 			}
@@ -250,44 +221,101 @@ public class ControlFont {
 	}
 
 	private void calculateHeight(PGraphics graphics, Label theLabel) {
-		txt.clear();
 		String myString = theLabel.getTextFormatted();
-		List<String> paragraphs = Arrays.asList(myString.split("\n"));
-		// does not recognize linebreaks at the end of theString.
-		myString = "";
-		for (String p : paragraphs) {
-			List<String> words = Arrays.asList(p.split("\\s"));
-			for (String w : words) {
-				if (graphics.textWidth(myString + w) < width) {
-					myString += w + " ";
-				} else {
-					txt.add(myString.substring(0, PApplet.max(0, myString.length() - 1)));
-					myString = w + " ";
-				}
-			}
-			txt.add(myString.substring(0, myString.length() - 1));
-			myString = "";
+		charCount = myString.length();
+		if (chars.length < charCount) {
+			chars = new char[charCount];
 		}
+		myString.getChars(0, charCount, chars, 0);
+		lineCount = wrap(graphics, width);
+		int numLines = lineCount;
 		if (theLabel.getHeight() % theLabel.getLineHeight() != 0) {
-			txt.add("");
+			numLines++;
 		}
-		textHeight = (PApplet.round(txt.size() * theLabel.getLineHeight()));
+		textHeight = (PApplet.round(numLines * theLabel.getLineHeight()));
 		int maxLineNum = PApplet.round(theLabel.getHeight() / theLabel.getLineHeight());
-		int offset = (int) (PApplet.max(0, txt.size() - maxLineNum) * (PApplet.abs(theLabel.getOffsetYratio())));
-		int lim = PApplet.min(txt.size(), maxLineNum);
-		s = "";
-		for (int i = 0; i < lim; i++) {
-			s += txt.get(i + offset) + "\n";
+		firstVisibleLine = (int) (PApplet.max(0, numLines - maxLineNum) * (PApplet.abs(theLabel.getOffsetYratio())));
+		visibleLineCount = PApplet.max(0, PApplet.min(lineCount - firstVisibleLine, maxLineNum));
+	}
+
+	/**
+	 * breaks the characters of a multiline label into lines not wider than theWidth and returns the number of lines. Lines are only broken
+	 * at whitespace, a word wider than theWidth occupies a line of its own. The width of a line is accumulated glyph by glyph so that each
+	 * character is measured exactly once, the resulting offsets are stored in lines.
+	 */
+	private int wrap(PGraphics graphics, float theWidth) {
+		int n = 0;
+		int start = 0;
+		int breakAt = -1;
+		float lineWidth = 0;
+		float widthAtBreak = 0;
+		int end = charCount;
+		// does not recognize linebreaks at the end of the text.
+		while (end > 0 && chars[end - 1] == '\n') {
+			end--;
+		}
+		for (int i = 0; i < end; i++) {
+			char c = chars[i];
+			if (c == '\n') {
+				n = addLine(n, start, i);
+				start = i + 1;
+				breakAt = -1;
+				lineWidth = 0;
+				continue;
+			}
+			lineWidth += charWidth(graphics, c);
+			if (Character.isWhitespace(c)) {
+				breakAt = i;
+				widthAtBreak = lineWidth;
+			} else if (lineWidth >= theWidth && breakAt >= start) {
+				n = addLine(n, start, breakAt);
+				start = breakAt + 1;
+				breakAt = -1;
+				lineWidth -= widthAtBreak;
+			}
 		}
+		return addLine(n, start, end);
+	}
+
+	private int addLine(int theIndex, int theStart, int theEnd) {
+		if (lines.length < (theIndex + 1) * 2) {
+			lines = Arrays.copyOf(lines, lines.length * 2);
+		}
+		lines[theIndex * 2] = theStart;
+		lines[theIndex * 2 + 1] = theEnd;
+		return theIndex + 1;
 	}
 
 	public int getOverflow() {
 		return (textHeight - height);
 	}
 
+	/**
+	 * returns the metrics of this font's PFont at the current size, metrics are shared between all ControlFonts using the same PFont and
+	 * size.
+	 */
+	public ControlFontMetrics getMetrics(PGraphics graphics) {
+		if (metrics == null) {
+			metrics = ControlFontMetrics.get(graphics, pfont, size);
+		}
+		return metrics;
+	}
+
+	public float charWidth(PGraphics graphics, char theChar) {
+		float w = getMetrics(graphics).getAdvance(theChar);
+		return w < 0 ? pfont.width(theChar) * size : w;
+	}
+
+	public float textWidth(PGraphics graphics, CharSequence theText) {
+		float w = 0;
+		for (int i = 0; i < theText.length(); i++) {
+			w += charWidth(graphics, theText.charAt(i));
+		}
+		return w;
+	}
+
 	public static int getWidthFor(String theText, Label theLabel, PApplet theApplet) {
-		theApplet.textFont(theLabel.getFont().pfont, theLabel.getFont().size);
-		return (int) theApplet.textWidth(theText);
+		return getWidthFor(theText, theLabel, theApplet.g);
 	}
         
         
@@ -306,15 +334,17 @@ public class ControlFont {
 		if (theLabel.isMultiline()) {
 			graphics.fill(theLabel.getColor());
 			graphics.textLeading(theLabel.getLineHeight());
-			graphics.text(s, 0, 0, theLabel.getWidth(), theLabel.getHeight());
+			drawLines(graphics, theLabel);
 		} else {
 			graphics.translate(0, -top + 1);
 			debug(graphics, theLabel);
 			graphics.fill(theLabel.getColor());
 			graphics.textLeading(theLabel.getLineHeight());
-			graphics.text(theLabel.getTextFormatted(), 0, 0);
-			if (RENDER_2X) {
+			if (!drawRun(graphics, theLabel, theLabel.getTextFormatted())) {
 				graphics.text(theLabel.getTextFormatted(), 0, 0);
+				if (RENDER_2X) {
+					graphics.text(theLabel.getTextFormatted(), 0, 0);
+				}
 			}
 		}
 
@@ -322,6 +352,69 @@ public class ControlFont {
 		graphics.textAlign(loadedAlign);
 	}
 
+	private void drawLines(PGraphics graphics, Label theLabel) {
+		float x = 0;
+		if (theLabel.textAlign == PApplet.CENTER) {
+			x = theLabel.getWidth() / 2;
+		} else if (theLabel.textAlign == PApplet.RIGHT) {
+			x = theLabel.getWidth();
+		}
+		float y = graphics.textAscent();
+		GlyphAtlas glyphs = getAtlas(graphics);
+		if (glyphs != null && visibleLineCount > 0
+				&& glyphs.covers(chars, lines[firstVisibleLine * 2], lines[(firstVisibleLine + visibleLineCount - 1) * 2 + 1])) {
+			glyphs.begin(graphics, theLabel.getColor());
+			for (int i = 0; i < visibleLineCount; i++) {
+				int line = (firstVisibleLine + i) * 2;
+				glyphs.text(graphics, chars, lines[line], lines[line + 1], x, y, size, theLabel.textAlign);
+				y += theLabel.getLineHeight();
+			}
+			glyphs.end(graphics);
+			return;
+		}
+		for (int i = 0; i < visibleLineCount; i++) {
+			int line = (firstVisibleLine + i) * 2;
+			graphics.text(chars, lines[line], lines[line + 1], x, y);
+			y += theLabel.getLineHeight();
+		}
+	}
+
+	/**
+	 * renders a singleline text from the glyph atlas, returns false when the atlas can not be used and the text has to be rendered with
+	 * PGraphics.text() instead.
+	 */
+	private boolean drawRun(PGraphics graphics, Label theLabel, String theText) {
+		GlyphAtlas glyphs = getAtlas(graphics);
+		if (glyphs == null) {
+			return false;
+		}
+		int n = theText.length();
+		if (run.length < n) {
+			run = new char[n];
+		}
+		theText.getChars(0, n, run, 0);
+		if (!glyphs.covers(run, 0, n)) {
+			return false;
+		}
+		glyphs.begin(graphics, theLabel.getColor());
+		glyphs.text(graphics, run, 0, n, 0, 0, size, theLabel.textAlign);
+		if (RENDER_2X) {
+			glyphs.text(graphics, run, 0, n, 0, 0, size, theLabel.textAlign);
+		}
+		glyphs.end(graphics);
+		return true;
+	}
+
+	private GlyphAtlas getAtlas(PGraphics graphics) {
+		if (!USE_GLYPH_ATLAS || !graphics.isGL() || graphics.textMode != PApplet.MODEL) {
+			return null;
+		}
+		if (atlas == null) {
+			atlas = GlyphAtlas.get(pfont);
+		}
+		return atlas;
+	}
+
 	private void debug(PGraphics graphics, Label theLabel) {
 		if (DEBUG) {
 
@@ -345,8 +438,7 @@ public class ControlFont {
 	}
 
 	public static int getWidthFor(String theText, Label theLabel, PGraphics graphics) {
-		graphics.textFont(theLabel.getFont().pfont, theLabel.getFont().size);
-		return (int) graphics.textWidth(theText);
+		return (int) theLabel.getFont().textWidth(graphics, theText);
 	}
 
 }
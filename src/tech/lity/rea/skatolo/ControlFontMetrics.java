@@ -0,0 +1,99 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import processing.core.PFont;
+import processing.core.PGraphics;
+
+/**
+ * ControlFontMetrics holds the ascent, descent and the advance widths of the characters 0 to 255 of a PFont at a given size. Metrics are
+ * measured once and shared by all ControlFonts using the same PFont and size, so that widths can be looked up without changing the font
+ * of a PGraphics and calling textWidth for each character.
+ * 
+ * @see skatolo.ControlFont
+ */
+public class ControlFontMetrics {
+
+	static final int NUM_CHARS = 256;
+
+	private static final Map<PFont, Map<Integer, ControlFontMetrics>> metrics = new WeakHashMap<PFont, Map<Integer, ControlFontMetrics>>();
+
+	private final float ascent;
+
+	private final float descent;
+
+	private final float[] advance = new float[NUM_CHARS];
+
+	/**
+	 * returns the metrics for a PFont at a given size. The metrics are measured with the PGraphics passed the first time they are requested,
+	 * the font and size of the PGraphics are restored afterwards.
+	 */
+	public static synchronized ControlFontMetrics get(PGraphics graphics, PFont theFont, int theSize) {
+		Map<Integer, ControlFontMetrics> sizes = metrics.get(theFont);
+		if (sizes == null) {
+			sizes = new HashMap<Integer, ControlFontMetrics>();
+			metrics.put(theFont, sizes);
+		}
+		ControlFontMetrics m = sizes.get(theSize);
+		if (m == null) {
+			m = new ControlFontMetrics(graphics, theFont, theSize);
+			sizes.put(theSize, m);
+		}
+		return m;
+	}
+
+	private ControlFontMetrics(PGraphics graphics, PFont theFont, int theSize) {
+		PFont loadedFont = graphics.textFont;
+		float loadedSize = graphics.textSize;
+		graphics.textFont(theFont, theSize);
+		ascent = graphics.textAscent();
+		descent = graphics.textDescent();
+		for (int i = 0; i < NUM_CHARS; i++) {
+			advance[i] = graphics.textWidth((char) i);
+		}
+		if (loadedFont != null) {
+			graphics.textFont(loadedFont, loadedSize);
+		}
+	}
+
+	public float getAscent() {
+		return ascent;
+	}
+
+	public float getDescent() {
+		return descent;
+	}
+
+	/**
+	 * returns the advance width of a character, characters beyond 255 are not part of the table and return -1.
+	 */
+	public float getAdvance(char theChar) {
+		return theChar < NUM_CHARS ? advance[theChar] : -1;
+	}
+}
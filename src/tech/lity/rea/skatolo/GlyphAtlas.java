@@ -0,0 +1,207 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import processing.core.PApplet;
+import processing.core.PFont;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+/**
+ * A GlyphAtlas packs the glyphs of a PFont (or BitFont) into a single
+ * texture so that a label can be rendered as one batch of textured quads
+ * instead of one image draw per glyph. Only characters from 32 to 255 are
+ * packed, text containing other characters has to be rendered with
+ * PGraphics.text(). An atlas is created once per PFont and shared, see
+ * GlyphAtlas.get(PFont).
+ *
+ * @see skatolo.ControlFont
+ */
+public class GlyphAtlas {
+
+    static final int FIRST_CHAR = 32;
+    static final int NUM_CHARS = 256;
+    static final int PADDING = 1;
+
+    private static final Map<PFont, GlyphAtlas> atlases = new WeakHashMap<PFont, GlyphAtlas>();
+
+    private final PImage texture;
+    private final int fontSize;
+
+    private final boolean[] packed = new boolean[NUM_CHARS];
+    private final int[] u = new int[NUM_CHARS];
+    private final int[] v = new int[NUM_CHARS];
+    private final int[] glyphWidth = new int[NUM_CHARS];
+    private final int[] glyphHeight = new int[NUM_CHARS];
+    private final int[] leftExtent = new int[NUM_CHARS];
+    private final int[] topExtent = new int[NUM_CHARS];
+    private final int[] setWidth = new int[NUM_CHARS];
+
+    /**
+     * returns the atlas for a PFont, the atlas is created the first time it
+     * is requested.
+     */
+    public static synchronized GlyphAtlas get(PFont theFont) {
+        GlyphAtlas atlas = atlases.get(theFont);
+        if (atlas == null) {
+            atlas = new GlyphAtlas(theFont);
+            atlases.put(theFont, atlas);
+        }
+        return atlas;
+    }
+
+    private GlyphAtlas(PFont theFont) {
+        fontSize = theFont.getSize();
+
+        // place the glyphs row by row, a new row is started when the
+        // current one would exceed the width of the texture.
+        int textureWidth = 512;
+        int x = PADDING;
+        int y = PADDING;
+        int rowHeight = 0;
+        PFont.Glyph[] glyphs = new PFont.Glyph[NUM_CHARS];
+        for (int c = FIRST_CHAR; c < NUM_CHARS; c++) {
+            PFont.Glyph glyph = theFont.getGlyph((char) c);
+            if (glyph == null || glyph.image == null) {
+                continue;
+            }
+            glyphs[c] = glyph;
+            if (x + glyph.width + PADDING > textureWidth) {
+                x = PADDING;
+                y += rowHeight + PADDING;
+                rowHeight = 0;
+            }
+            packed[c] = true;
+            u[c] = x;
+            v[c] = y;
+            glyphWidth[c] = glyph.width;
+            glyphHeight[c] = glyph.height;
+            leftExtent[c] = glyph.leftExtent;
+            topExtent[c] = glyph.topExtent;
+            setWidth[c] = glyph.setWidth;
+            x += glyph.width + PADDING;
+            rowHeight = PApplet.max(rowHeight, glyph.height);
+        }
+
+        // PFont.width(char) returns the width of an 'i' for a space,
+        // PGraphics advances text by the same amount.
+        if (packed['i']) {
+            setWidth[' '] = setWidth['i'];
+        }
+
+        // glyph images are of format ALPHA, their coverage is moved into the
+        // alpha channel of a white texture so that the color can be applied
+        // with tint().
+        texture = new PImage(textureWidth, y + rowHeight + PADDING, PApplet.ARGB);
+        for (int c = FIRST_CHAR; c < NUM_CHARS; c++) {
+            if (glyphs[c] == null) {
+                continue;
+            }
+            PImage image = glyphs[c].image;
+            for (int j = 0; j < glyphHeight[c]; j++) {
+                for (int i = 0; i < glyphWidth[c]; i++) {
+                    int a = image.pixels[j * image.width + i] & 0xff;
+                    texture.pixels[(v[c] + j) * texture.width + u[c] + i] = (a << 24) | 0xffffff;
+                }
+            }
+        }
+        texture.updatePixels();
+    }
+
+    public PImage getTexture() {
+        return texture;
+    }
+
+    /**
+     * checks if all characters within the given range are available inside
+     * the atlas.
+     */
+    public boolean covers(char[] theChars, int theStart, int theStop) {
+        for (int i = theStart; i < theStop; i++) {
+            char c = theChars[i];
+            if (c >= NUM_CHARS || !packed[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public float textWidth(char[] theChars, int theStart, int theStop, float theSize) {
+        int w = 0;
+        for (int i = theStart; i < theStop; i++) {
+            w += setWidth[theChars[i]];
+        }
+        return w * theSize / fontSize;
+    }
+
+    /**
+     * starts a batch of glyph quads, all text added until end(PGraphics) is
+     * called is rendered as a single shape using the atlas texture.
+     */
+    public void begin(PGraphics graphics, int theColor) {
+        graphics.pushStyle();
+        graphics.noStroke();
+        graphics.tint(theColor);
+        graphics.textureMode(PApplet.IMAGE);
+        graphics.beginShape(PApplet.QUADS);
+        graphics.texture(texture);
+    }
+
+    /**
+     * adds the quads of a range of characters to the current batch. the text
+     * is aligned horizontally like PGraphics.text() does for textAlign LEFT,
+     * CENTER and RIGHT, theY is the baseline.
+     */
+    public void text(PGraphics graphics, char[] theChars, int theStart, int theStop, float theX, float theY, float theSize, int theAlign) {
+        if (theAlign == PApplet.CENTER) {
+            theX -= textWidth(theChars, theStart, theStop, theSize) / 2;
+        } else if (theAlign == PApplet.RIGHT) {
+            theX -= textWidth(theChars, theStart, theStop, theSize);
+        }
+        float scale = theSize / fontSize;
+        for (int i = theStart; i < theStop; i++) {
+            char c = theChars[i];
+            if (glyphWidth[c] > 0 && glyphHeight[c] > 0) {
+                float x1 = theX + leftExtent[c] * scale;
+                float y1 = theY - topExtent[c] * scale;
+                float x2 = x1 + glyphWidth[c] * scale;
+                float y2 = y1 + glyphHeight[c] * scale;
+                graphics.vertex(x1, y1, u[c], v[c]);
+                graphics.vertex(x2, y1, u[c] + glyphWidth[c], v[c]);
+                graphics.vertex(x2, y2, u[c] + glyphWidth[c], v[c] + glyphHeight[c]);
+                graphics.vertex(x1, y2, u[c], v[c] + glyphHeight[c]);
+            }
+            theX += setWidth[c] * scale;
+        }
+    }
+
+    public void end(PGraphics graphics) {
+        graphics.endShape();
+        graphics.popStyle();
+    }
+}
@@ -50,8 +50,14 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 import processing.core.PApplet;
@@ -173,6 +179,11 @@ public class Skatolo extends SkatoloBase {
 
     public boolean isAndroid = false;
 
+    // tasks of background saves and loads which have to run on the animation thread, see invokeLater(Runnable).
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private static ExecutorService backgroundExecutor;
+
     /**
      * Create a new instance of skatolo.
      *
@@ -294,13 +305,13 @@ public class Skatolo extends SkatoloBase {
     private void loadDefaultKeyboardShortcuts() {
         mapKeyFor(new ControlKey() {
             public void keyEvent() {
-                saveProperties();
+                savePropertiesInBackground();
             }
         }, PApplet.ALT, PApplet.SHIFT, 's');
 
         mapKeyFor(new ControlKey() {
             public void keyEvent() {
-                loadProperties();
+                loadPropertiesInBackground();
             }
         }, PApplet.ALT, PApplet.SHIFT, 'l');
 
@@ -758,12 +769,44 @@ public class Skatolo extends SkatoloBase {
      * @exclude
      */
     public void pre() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
         Iterator<FieldChangedListener> itr = fieldChangedListenerMap.values().iterator();
         while (itr.hasNext()) {
             itr.next().update();
         }
     }
 
+    /**
+     * runs theTask on the animation thread before the next frame is drawn,
+     * can be called from any thread.
+     */
+    public void invokeLater(Runnable theTask) {
+        pendingTasks.add(theTask);
+    }
+
+    /**
+     * returns the thread which writes and reads properties and layouts in the
+     * background, tasks are run one after another in the order they were
+     * submitted.
+     *
+     * @exclude
+     */
+    public static synchronized ExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable theRunnable) {
+                    Thread thread = new Thread(theRunnable, "skatolo-io");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return backgroundExecutor;
+    }
+
     /**
      * call draw() from your program when autoDraw is disabled. Only used for
      * autoDraw.
@@ -1018,6 +1061,21 @@ public class Skatolo extends SkatoloBase {
         return properties.saveAs(theFilePath, theSets);
     }
 
+    /**
+     * Saves the current values of controllers into a default properties file
+     * without blocking the animation thread, the file is written by a
+     * background thread.
+     *
+     * @see skatolo.ControllerProperties
+     */
+    public Future<Boolean> savePropertiesInBackground() {
+        return properties.saveInBackground();
+    }
+
+    public Future<Boolean> savePropertiesInBackground(String theFilePath) {
+        return properties.saveInBackground(theFilePath);
+    }
+
     /**
      * Loads properties from a default properties file and changes values of
      * controllers accordingly.
@@ -1042,15 +1100,29 @@ public class Skatolo extends SkatoloBase {
         if (f.exists()) {
             return properties.load(theFilePath);
         }
-        theFilePath = checkPropertiesPath(theFilePath + ".ser");
-        f = new File(theFilePath);
-        if (f.exists()) {
-            return properties.load(theFilePath);
+        // tries the extension of each properties format.
+        if (properties.load(theFilePath)) {
+            return true;
         }
         logger.info("Properties File " + theFilePath + " does not exist.");
         return false;
     }
 
+    /**
+     * Loads properties from a default properties file without blocking the
+     * animation thread, the values are applied before the next frame is
+     * drawn.
+     *
+     * @see skatolo.ControllerProperties
+     */
+    public Future<Boolean> loadPropertiesInBackground() {
+        return properties.loadInBackground();
+    }
+
+    public Future<Boolean> loadPropertiesInBackground(String theFilePath) {
+        return properties.loadInBackground(theFilePath);
+    }
+
     public String checkPropertiesPath(String theFilePath) {
         theFilePath = (theFilePath.startsWith("/") || theFilePath.startsWith(".")) ? theFilePath : papplet.sketchPath(theFilePath);
         return theFilePath;
@@ -1078,6 +1150,22 @@ public class Skatolo extends SkatoloBase {
         getLayout().save(theFilePath);
     }
 
+    /**
+     * @exclude @param theFilePath
+     * @return
+     */
+    public Future<Boolean> loadLayoutInBackground(String theFilePath) {
+        return getLayout().loadInBackground(theFilePath);
+    }
+
+    /**
+     * @exclude @param theFilePath
+     * @return
+     */
+    public Future<Boolean> saveLayoutInBackground(String theFilePath) {
+        return getLayout().saveInBackground(theFilePath);
+    }
+
     /**
      * Returns the current version of skatolo
      *
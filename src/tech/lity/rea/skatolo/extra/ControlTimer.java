@@ -24,20 +24,49 @@
  */
 package tech.lity.rea.skatolo.extra;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import processing.core.PApplet;
+
 /**
- * control timer is a timer that can be used for example as a stop watch or a duration timer.
+ * control timer is a timer that can be used for example as a stop watch or a duration timer. The
+ * time of a timer is measured with System.nanoTime(), it can be paused and resumed and runs
+ * faster or slower than real time, see setSpeedOfTime(float).
+ * 
+ * Listeners can be scheduled at a time of the timer or in a fixed interval. When the timer is
+ * created for a PApplet, due listeners are called before each frame on the animation thread,
+ * otherwise they are called from update().
  * 
  * @example controllers/skatolotimer
  */
 public class ControlTimer {
 
-	long millisOffset;
+	/**
+	 * called by a ControlTimer when a scheduled time is reached, theTime is the scheduled time in
+	 * milliseconds.
+	 */
+	public interface TimerListener {
+
+		public void timerEvent(ControlTimer theTimer, long theTime);
+	}
+
+	// the time of the timer in nanoseconds when it was last started or changed speed.
+	long nanosOffset;
+
+	// the value of System.nanoTime() at that moment.
+	long nanosStart;
+
+	boolean isRunning = true;
 
 	int ms, s, m, h, d;
 
 	float _mySpeed = 1;
 
-	int current, previous;
+	private final PriorityQueue<Schedule> schedules = new PriorityQueue<Schedule>();
+
+	private PApplet applet;
 
 	/**
 	 * create a new control timer, a timer that counts up in time.
@@ -46,6 +75,16 @@ public class ControlTimer {
 		reset();
 	}
 
+	/**
+	 * create a new control timer which calls its listeners on the animation thread of theApplet.
+	 */
+	public ControlTimer(PApplet theApplet) {
+		this();
+		applet = theApplet;
+		applet.registerMethod("pre", this);
+		applet.registerMethod("dispose", this);
+	}
+
 	/**
 	 * return a string representation of the current status of the timer.
 	 * 
@@ -53,64 +92,216 @@ public class ControlTimer {
 	 */
 	public String toString() {
 		update();
-		return (((h < 10) ? "0" + h : "" + h) + " : " + ((m < 10) ? "0" + m : "" + m) + " : " + ((s < 10) ? "0" + s : "" + s) // +
-																																// " : "
-																																// +
-		// ((ms<100) ? "0" + ms: "" +ms)
-		);
+		return (((h < 10) ? "0" + h : "" + h) + " : " + ((m < 10) ? "0" + m : "" + m) + " : " + ((s < 10) ? "0" + s : "" + s));
 	}
 
 	/**
-	 * called to update the timer.
+	 * called to update the timer, calls the listeners which are due unless the timer has been
+	 * created for a PApplet.
 	 */
 	public void update() {
-		current = (int) time();
-		if (current > previous + 10) {
-			ms = (int) (current * _mySpeed);
-			s = (int) (((current * _mySpeed) / 1000));
-			m = (int) (s / 60);
-			h = (int) (m / 60);
-			d = (int) (h / 24);
-			ms %= 1000;
-			s %= 60;
-			m %= 60;
-			h %= 24;
-			previous = current;
+		long t = nanos();
+		ms = (int) ((t / 1000000) % 1000);
+		long seconds = t / 1000000000;
+		s = (int) (seconds % 60);
+		m = (int) ((seconds / 60) % 60);
+		h = (int) ((seconds / 3600) % 24);
+		d = (int) (seconds / 86400);
+		if (applet == null) {
+			fire(t);
 		}
+	}
+
+	/**
+	 * @exclude
+	 */
+	public void pre() {
+		update();
+		fire(nanos());
+	}
 
+	/**
+	 * @exclude
+	 */
+	public void dispose() {
+		if (applet != null) {
+			applet.unregisterMethod("pre", this);
+			applet.unregisterMethod("dispose", this);
+			applet = null;
+		}
 	}
 
 	/**
-	 * get the time in milliseconds since the timer was started.
+	 * get the time in milliseconds since the timer was started, paused time is not counted and the
+	 * speed of time is applied.
 	 * 
 	 * @return long
 	 */
 	public long time() {
-		return (System.currentTimeMillis() - millisOffset);
+		return nanos() / 1000000;
 	}
 
 	/**
-	 * reset the timer.
+	 * get the time in nanoseconds since the timer was started.
+	 */
+	public synchronized long nanos() {
+		if (!isRunning) {
+			return nanosOffset;
+		}
+		return nanosOffset + (long) ((System.nanoTime() - nanosStart) * (double) _mySpeed);
+	}
+
+	/**
+	 * reset the timer to 0, scheduled listeners start over.
 	 */
 	public void reset() {
-		millisOffset = System.currentTimeMillis();
-		current = previous = 0;
-		s = 0; // Values from 0 - 59
-		m = 0; // Values from 0 - 59
-		h = 0; // Values from 0 - 23
+		synchronized (this) {
+			nanosOffset = 0;
+			nanosStart = System.nanoTime();
+			for (Schedule schedule : schedules) {
+				schedule.next = schedule.start;
+			}
+			// the order does not change, all schedules are moved back to their start.
+			List<Schedule> l = new ArrayList<Schedule>(schedules);
+			schedules.clear();
+			schedules.addAll(l);
+		}
 		update();
 	}
 
 	/**
-	 * set the speed of time, for slow motion or high speed.
+	 * stops the time of the timer until resume() is called.
+	 */
+	public synchronized void pause() {
+		if (isRunning) {
+			nanosOffset = nanos();
+			isRunning = false;
+		}
+	}
+
+	public synchronized void resume() {
+		if (!isRunning) {
+			nanosStart = System.nanoTime();
+			isRunning = true;
+		}
+	}
+
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	/**
+	 * set the speed of time, for slow motion or high speed. The speed applies from now on, the time
+	 * which has passed so far does not change.
 	 * 
 	 * @param theSpeed int
 	 */
 	public void setSpeedOfTime(float theSpeed) {
-		_mySpeed = theSpeed;
+		synchronized (this) {
+			nanosOffset = nanos();
+			nanosStart = System.nanoTime();
+			_mySpeed = theSpeed;
+		}
 		update();
 	}
 
+	public float getSpeedOfTime() {
+		return _mySpeed;
+	}
+
+	/**
+	 * calls theListener once when the timer reaches theTime (in milliseconds).
+	 */
+	public ControlTimer at(long theTime, TimerListener theListener) {
+		return schedule(theTime, 0, theListener);
+	}
+
+	/**
+	 * calls theListener every theInterval milliseconds, starting theInterval milliseconds from now.
+	 * 
+	 * @throws IllegalArgumentException if theInterval is 0 or less, use at(long, TimerListener) to
+	 *             call a listener once.
+	 */
+	public ControlTimer every(long theInterval, TimerListener theListener) {
+		checkInterval(theInterval);
+		return schedule(time() + theInterval, theInterval, theListener);
+	}
+
+	/**
+	 * calls theListener at theStart and then every theInterval milliseconds. The times are computed
+	 * from theStart, so the listener does not drift when frames are late. When several intervals
+	 * passed since the last call, e.g. after a stall or when the speed of time was raised, the
+	 * listener is called once for the last of them and the others are skipped.
+	 * 
+	 * @throws IllegalArgumentException if theInterval is 0 or less.
+	 */
+	public ControlTimer every(long theStart, long theInterval, TimerListener theListener) {
+		checkInterval(theInterval);
+		return schedule(theStart, theInterval, theListener);
+	}
+
+	private static void checkInterval(long theInterval) {
+		if (theInterval <= 0) {
+			throw new IllegalArgumentException("the interval of a repeating listener must be greater than 0, not " + theInterval);
+		}
+	}
+
+	private synchronized ControlTimer schedule(long theStart, long theInterval, TimerListener theListener) {
+		Schedule schedule = new Schedule();
+		schedule.start = schedule.next = theStart * 1000000;
+		schedule.interval = theInterval * 1000000;
+		schedule.listener = theListener;
+		schedules.add(schedule);
+		return this;
+	}
+
+	/**
+	 * removes all schedules of theListener.
+	 */
+	public synchronized ControlTimer remove(TimerListener theListener) {
+		List<Schedule> l = new ArrayList<Schedule>();
+		for (Schedule schedule : schedules) {
+			if (schedule.listener == theListener) {
+				l.add(schedule);
+			}
+		}
+		schedules.removeAll(l);
+		return this;
+	}
+
+	/**
+	 * calls the listeners due at theTime in the order of their scheduled times, a repeating listener
+	 * is called once with the last of its times which has passed, even if more than one interval
+	 * has passed.
+	 */
+	private void fire(long theTime) {
+		List<Schedule> due = null;
+		synchronized (this) {
+			while (!schedules.isEmpty() && schedules.peek().next <= theTime) {
+				Schedule schedule = schedules.poll();
+				if (due == null) {
+					due = new ArrayList<Schedule>();
+				}
+				if (schedule.interval > 0) {
+					// skips to the last interval which has passed.
+					schedule.next += (theTime - schedule.next) / schedule.interval * schedule.interval;
+					due.add(schedule.copy());
+					schedule.next += schedule.interval;
+					schedules.add(schedule);
+				} else {
+					due.add(schedule.copy());
+				}
+			}
+		}
+		if (due == null) {
+			return;
+		}
+		// listeners are called outside the lock so that they can schedule other listeners.
+		for (Schedule schedule : due) {
+			schedule.listener.timerEvent(this, schedule.next / 1000000);
+		}
+	}
+
 	/**
 	 * Get the milliseconds of the timer.
 	 */
@@ -146,4 +337,28 @@ public class ControlTimer {
 		return d;
 	}
 
+	private static class Schedule implements Comparable<Schedule> {
+
+		long start;
+
+		long next;
+
+		long interval;
+
+		TimerListener listener;
+
+		Schedule copy() {
+			Schedule schedule = new Schedule();
+			schedule.start = start;
+			schedule.next = next;
+			schedule.interval = interval;
+			schedule.listener = listener;
+			return schedule;
+		}
+
+		public int compareTo(Schedule theSchedule) {
+			return next < theSchedule.next ? -1 : (next > theSchedule.next ? 1 : 0);
+		}
+	}
+
 }
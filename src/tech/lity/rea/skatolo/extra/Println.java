@@ -25,21 +25,51 @@
 package tech.lity.rea.skatolo.extra;
 
 import tech.lity.rea.skatolo.gui.group.Textarea;
-import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
-
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Println redirects System.out into a Textarea. Text printed from any thread is decoded and put
+ * into a lock-free queue, the queue is drained into the Textarea once per frame on the animation
+ * thread. Printing never blocks, when the queue is full new text is either dropped or replaces
+ * the oldest queued text, see setOverflow(Overflow).
+ * 
+ * @example extra/skatoloconsole
+ */
 public class Println {
 
+	public enum Overflow {
+		DROP, OVERWRITE
+	}
+
 	int max = -1;
 
 	final Textarea c;
 
-	String buffer = "";
-
 	boolean paused;
 
+	private int capacity = 1024;
+
+	private Overflow overflow = Overflow.OVERWRITE;
+
+	private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<String>();
+
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final AtomicInteger dropped = new AtomicInteger();
+
+	private final StringBuilder chunk = new StringBuilder();
+
+	private PrintStream out;
+
 
 	public Println(Textarea theTextarea) {
 		c = theTextarea;
@@ -53,40 +83,88 @@ public class Println {
 	}
 
 
+	/**
+	 * sets the number of text chunks which can be queued between two frames.
+	 */
+	public Println setCapacity(int theCapacity) {
+		capacity = Math.max(1, theCapacity);
+		return this;
+	}
+
+
+	/**
+	 * sets what happens to printed text when the queue is full, either the new text is dropped or
+	 * it replaces the oldest queued text (default).
+	 */
+	public Println setOverflow(Overflow theOverflow) {
+		overflow = theOverflow;
+		return this;
+	}
+
+
+	/**
+	 * returns the number of text chunks which have been lost because the queue was full.
+	 */
+	public int getDropped() {
+		return dropped.get();
+	}
+
+
 	private void run() {
+		out = System.out;
 		try {
-			final PipedInputStream pi = new PipedInputStream();
-			final PipedOutputStream po = new PipedOutputStream(pi);
-			System.setOut(new PrintStream(po, true));
-
-			(new Thread() {
-
-				public void run() {
-					final byte[] buf = new byte[1024];
-					try {
-						while (true) {
-							final int len = pi.read(buf);
-							if (len == -1) {
-								break;
-							}
-							if (!paused) {
-								if (!c._myScrollbar.isMousePressed()) {
-									c.append(buffer + new String(buf, 0, len), max);
-									buffer = "";
-									c.scroll(1);
-								}
-								else {
-									buffer += new String(buf, 0, len);
-								}
-							}
-						}
-					} catch (IOException e) {
-					}
-				}
-			}).start();
-		} catch (IOException e) {
+			System.setOut(new PrintStream(new ConsoleOutputStream(), true, "UTF-8"));
+		} catch (UnsupportedEncodingException e) {
 			System.out.println("Problems setting up console");
+			return;
 		}
+		c.getWindow().papplet().registerMethod("pre", this);
+		c.getWindow().papplet().registerMethod("dispose", this);
+	}
+
+
+	private void offer(String theText) {
+		if (queued.incrementAndGet() > capacity) {
+			if (overflow == Overflow.DROP || queue.poll() == null) {
+				queued.decrementAndGet();
+				dropped.incrementAndGet();
+				return;
+			}
+			queued.decrementAndGet();
+			dropped.incrementAndGet();
+		}
+		queue.offer(theText);
+	}
+
+
+	/**
+	 * drains the queued text into the textarea, called by processing before each frame.
+	 * 
+	 * @exclude
+	 */
+	public void pre() {
+		if (!paused && c._myScrollbar.isMousePressed()) {
+			// keep the text queued while the scrollbar is held.
+			return;
+		}
+		String s;
+		while ((s = queue.poll()) != null) {
+			queued.decrementAndGet();
+			chunk.append(s);
+		}
+		if (chunk.length() > 0 && !paused) {
+			c.append(chunk.toString(), max);
+			c.scroll(1);
+		}
+		chunk.setLength(0);
+	}
+
+
+	/**
+	 * @exclude
+	 */
+	public void dispose() {
+		System.setOut(out);
 	}
 
 
@@ -104,4 +182,51 @@ public class Println {
 		paused = false;
 	}
 
+
+	/**
+	 * decodes the bytes written to System.out, multi-byte characters split across two writes are
+	 * kept until they are complete.
+	 */
+	class ConsoleOutputStream extends OutputStream {
+
+		private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		private final ByteBuffer bytes = ByteBuffer.allocate(1024);
+
+		private final CharBuffer chars = CharBuffer.allocate(1024);
+
+		@Override public synchronized void write(int b) {
+			bytes.put((byte) b);
+			decode();
+		}
+
+		@Override public synchronized void write(byte[] b, int off, int len) {
+			while (len > 0) {
+				int n = Math.min(len, bytes.remaining());
+				bytes.put(b, off, n);
+				off += n;
+				len -= n;
+				decode();
+			}
+		}
+
+		private void decode() {
+			bytes.flip();
+			while (decoder.decode(bytes, chars, false).isOverflow()) {
+				emit();
+			}
+			bytes.compact();
+			emit();
+		}
+
+		private void emit() {
+			chars.flip();
+			if (chars.hasRemaining()) {
+				offer(chars.toString());
+			}
+			chars.clear();
+		}
+	}
+
 }
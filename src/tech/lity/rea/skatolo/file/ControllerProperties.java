@@ -26,38 +26,56 @@ package tech.lity.rea.skatolo.file;
 
 import tech.lity.rea.skatolo.Skatolo;
 import tech.lity.rea.skatolo.gui.ControllerInterface;
-import tech.lity.rea.skatolo.Hacks;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.StringReader;
-import java.lang.reflect.Method;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.Map.Entry;
 import java.util.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import processing.core.PApplet;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Values of controllers can be stored inside properties files which can be
@@ -71,7 +89,7 @@ public class ControllerProperties {
 	 * @exclude
 	 */
 	public enum Format {
-		SERIALIZED("ser"), XML("xml"), JSON("json");
+		SERIALIZED("ser"), XML("xml"), JSON("json"), BINARY("skb");
 
 		final String extension;
 
@@ -89,19 +107,51 @@ public class ControllerProperties {
 			return format;
 		}
 
-		protected void compile(String thePropertiesPath, Set<ControllerProperty> theProperties) {
-			if (!thePropertiesPath.endsWith("." + extension)) {
-				thePropertiesPath = thePropertiesPath + "." + extension;
+		/**
+		 * writes a temporary file first which replaces the properties file
+		 * once it is complete, so an interrupted save never leaves a damaged
+		 * properties file. Each save uses its own temporary file, a save in
+		 * the background and a save on the animation thread to the same file
+		 * do not write into each other.
+		 */
+		protected boolean compile(String thePropertiesPath, List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets) {
+			File file = new File(getPath(thePropertiesPath)).getAbsoluteFile();
+			File temp;
+			try {
+				temp = Files.createTempFile(file.getParentFile().toPath(), file.getName() + ".", ".tmp").toFile();
+			} catch (IOException e) {
+				logger.warning("can't create a temporary file for " + file + ", " + e);
+				return false;
+			}
+			if (!get().compile(theProperties, theSets, temp.getPath())) {
+				temp.delete();
+				return false;
+			}
+			try {
+				try {
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			} catch (IOException e) {
+				logger.warning("can't replace " + file + ", " + e);
+				temp.delete();
+				return false;
 			}
-			get().compile(theProperties, thePropertiesPath);
+			return true;
+		}
+
+		protected String getPath(String thePropertiesPath) {
+			return thePropertiesPath.endsWith("." + extension) ? thePropertiesPath : thePropertiesPath + "." + extension;
 		}
 
 	}
 
-	{
+	static {
 		Format.SERIALIZED.set(new SerializedFormat());
 		Format.XML.set(new XMLFormat());
 		Format.JSON.set(new JSONFormat());
+		Format.BINARY.set(new BinaryFormat());
 	}
 
 	public final static int OPEN = 0;
@@ -134,7 +184,23 @@ public class ControllerProperties {
 
 	public static final Logger logger = Logger.getLogger(ControllerProperties.class.getName());
 
-	private Map<String, Set<ControllerProperty>> _mySnapshots;
+	private Map<String, PropertySnapshot> _mySnapshots;
+
+	private PropertySnapshot _myLastSnapshot;
+
+	private final PropertySlots _mySlots = new PropertySlots();
+
+	private PropertyMorph _myMorph;
+
+	// the values last written by saveDelta or compact, by file.
+	private final Map<String, PropertySnapshot> _mySaved = new HashMap<String, PropertySnapshot>();
+
+	// the background saves which did not finish yet, by file.
+	private final Map<String, Future<Boolean>> _myPendingSaves = new HashMap<String, Future<Boolean>>();
+
+	private final PropertyJournal _myJournal = new PropertyJournal(new BinaryFormat());
+
+	private int _myJournalLimit = 64;
 
 	public ControllerProperties(Skatolo theskatolo) {
 		skatolo = theskatolo;
@@ -142,7 +208,7 @@ public class ControllerProperties {
 		allProperties = new HashMap<ControllerProperty, HashSet<String>>();
 		allSets = new HashSet<String>();
 		addSet(_myDefaultSetName);
-		_mySnapshots = new LinkedHashMap<String, Set<ControllerProperty>>();
+		_mySnapshots = new LinkedHashMap<String, PropertySnapshot>();
 	}
 
 	public Map<ControllerProperty, HashSet<String>> get() {
@@ -163,6 +229,7 @@ public class ControllerProperties {
 			allProperties.put(p, new HashSet<String>());
 			// register the property wit the default properties set
 			allProperties.get(p).add(_myDefaultSetName);
+			_mySlots.add(p);
 		}
 		return p;
 	}
@@ -185,6 +252,7 @@ public class ControllerProperties {
 	public ControllerProperties remove(ControllerInterface<?> theController, String theSetter, String theGetter) {
 		ControllerProperty cp = new ControllerProperty(theController, theSetter, theGetter);
 		allProperties.remove(cp);
+		_mySlots.remove(cp);
 		return this;
 	}
 
@@ -193,6 +261,7 @@ public class ControllerProperties {
 		for (ControllerProperty cp : list) {
 			if (cp.getController().equals(theController)) {
 				allProperties.remove(cp);
+				_mySlots.remove(cp);
 			}
 		}
 		return this;
@@ -356,17 +425,17 @@ public class ControllerProperties {
 			return this;
 		}
 		allProperties.remove(theProperty);
+		_mySlots.remove(theProperty);
 		return this;
 	}
 
 	private boolean updatePropertyValue(ControllerProperty theProperty) {
-		Method method;
 		try {
-			method = theProperty.getController().getClass().getMethod(theProperty.getGetter());
-			Object value = method.invoke(theProperty.getController());
-			theProperty.setType(method.getReturnType());
+			PropertyAccessor accessor = PropertyAccessor.get(theProperty);
+			Object value = accessor.get(theProperty.getController());
+			theProperty.setType(accessor.getType());
 			theProperty.setValue(value);
-			if (checkSerializable(value)) {
+			if (isSerializable(accessor.getType(), value)) {
 				return true;
 			}
 		} catch (Exception e) {
@@ -375,6 +444,11 @@ public class ControllerProperties {
 		return false;
 	}
 
+	private boolean isSerializable(Class<?> theType, Object theValue) {
+		// primitives, strings and primitive arrays are always serializable.
+		return PropertyAccessor.typeOf(theType, theValue) != PropertyAccessor.UNSUPPORTED || checkSerializable(theValue);
+	}
+
 	private boolean checkSerializable(Object theProperty) {
 		try {
 			ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -388,24 +462,115 @@ public class ControllerProperties {
 	}
 
 	/**
-	 * logs all registered properties in memory. Here, clones of properties are
-	 * stored inside a map and can be accessed by key using the getLog method.
+	 * reads the current values of the active properties and returns the
+	 * properties which can be saved, sorted by address, setter and getter so
+	 * that files written by the binary and text formats do not change when
+	 * the values do not.
+	 */
+	private List<ControllerProperty> update(Collection<ControllerProperty> theProperties) {
+		List<ControllerProperty> list = new ArrayList<ControllerProperty>(theProperties.size());
+		for (ControllerProperty cp : theProperties) {
+			if (cp.isActive() && updatePropertyValue(cp)) {
+				cp.setId(cp.getController().getId());
+				list.add(cp);
+			}
+		}
+		Collections.sort(list, propertyOrder);
+		return list;
+	}
+
+	private static final Comparator<ControllerProperty> propertyOrder = new Comparator<ControllerProperty>() {
+		public int compare(ControllerProperty a, ControllerProperty b) {
+			int c = a.getAddress().compareTo(b.getAddress());
+			c = (c != 0) ? c : a.getSetter().compareTo(b.getSetter());
+			return (c != 0) ? c : a.getGetter().compareTo(b.getGetter());
+		}
+	};
+
+	/**
+	 * returns the properties with a value which can be stored without java
+	 * serialization.
+	 */
+	private static List<ControllerProperty> typed(List<ControllerProperty> theProperties) {
+		List<ControllerProperty> list = new ArrayList<ControllerProperty>(theProperties.size());
+		for (ControllerProperty cp : theProperties) {
+			if (cp.getValue() != null && PropertyAccessor.typeOf(cp.getType(), cp.getValue()) != PropertyAccessor.UNSUPPORTED) {
+				list.add(cp);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * returns the sorted names of the sets a property belongs to.
+	 */
+	private Set<String> getSets(ControllerProperty theProperty) {
+		HashSet<String> sets = allProperties.get(theProperty);
+		return (sets == null) ? new TreeSet<String>() : new TreeSet<String>(sets);
+	}
+
+	/**
+	 * returns the sorted names of the sets of each of theProperties.
+	 */
+	private Map<ControllerProperty, Set<String>> getSets(List<ControllerProperty> theProperties) {
+		Map<ControllerProperty, Set<String>> sets = new IdentityHashMap<ControllerProperty, Set<String>>();
+		for (ControllerProperty cp : theProperties) {
+			sets.put(cp, getSets(cp));
+		}
+		return sets;
+	}
+
+	/**
+	 * applies a value read from a file to the controller with address
+	 * theAddress, and adds its property to theSets if given.
+	 */
+	private boolean apply(String theAddress, String theSetter, String theGetter, Integer theId, Class<?> theType, Object theValue, Collection<String> theSets) {
+		ControllerInterface<?> ci = skatolo.getController(theAddress);
+		ci = (ci == null) ? skatolo.getGroup(theAddress) : ci;
+		if (ci == null) {
+			logger.warning("skipping a property, " + theAddress + " does not exist.");
+			return false;
+		}
+		if (theId != null) {
+			ci.setId(theId);
+		}
+		theGetter = (theGetter == null) ? "" : theGetter;
+		try {
+			PropertyAccessor.get(ci.getClass(), theSetter, theGetter).set(ci, theValue, theType);
+		} catch (Exception e) {
+			logger.severe(e.toString());
+			return false;
+		}
+		if (theSets != null && !theSets.isEmpty()) {
+			copy(register(ci, theSetter, theGetter), theSets.toArray(new String[theSets.size()]));
+		}
+		return true;
+	}
+
+	/**
+	 * applies values to the controllers as they are read.
+	 */
+	private final PropertyTarget controllers = new PropertyTarget() {
+		public void set(String theAddress, String theSetter, String theGetter, Integer theId, Class<?> theType, Object theValue, Collection<String> theSets) {
+			apply(theAddress, theSetter, theGetter, theId, theType, theValue, theSets);
+		}
+	};
+
+	/**
+	 * logs all registered properties in memory. The values are stored by
+	 * property slot inside a snapshot which can be accessed by key using the
+	 * getSnapshot method. Values which did not change since the previous
+	 * snapshot with the same key, or since the last snapshot taken, are
+	 * shared with that snapshot.
 	 * 
 	 * @see skatolo.ControllerProperties#getSnapshot(String)
 	 * @param theKey
 	 * @return ControllerProperties
 	 */
 	public ControllerProperties setSnapshot(String theKey) {
-		Set<ControllerProperty> l = new HashSet<ControllerProperty>();
-		for (ControllerProperty cp : allProperties.keySet()) {
-			updatePropertyValue(cp);
-			try {
-				l.add((ControllerProperty) cp.clone());
-			} catch (CloneNotSupportedException e) {
-				// TODO Auto-generated catch block
-			}
-		}
-		_mySnapshots.put(theKey, l);
+		PropertySnapshot base = _mySnapshots.get(theKey);
+		_myLastSnapshot = PropertySnapshot.capture(_mySlots, (base == null) ? _myLastSnapshot : base);
+		_mySnapshots.put(theKey, _myLastSnapshot);
 		return this;
 	}
 
@@ -425,6 +590,92 @@ public class ControllerProperties {
 		return this;
 	}
 
+	/**
+	 * stores the snapshot theFrom under a second key theTo. Snapshots do not
+	 * change once taken, the copy shares all values with the original until
+	 * one of them is updated.
+	 */
+	public ControllerProperties copySnapshot(String theFrom, String theTo) {
+		PropertySnapshot snapshot = _mySnapshots.get(theFrom);
+		if (snapshot != null) {
+			_mySnapshots.put(theTo, snapshot);
+		}
+		return this;
+	}
+
+	/**
+	 * writes the snapshots theKeys, or all snapshots if no key is given, to a
+	 * preset bank. The numeric and boolean properties of thousands of presets
+	 * can be kept in one bank and recalled with getPreset without loading a
+	 * file for each preset.
+	 * 
+	 * @see skatolo.PresetBank
+	 */
+	public boolean savePresetBank(String thePath, String... theKeys) {
+		List<String> names = new ArrayList<String>();
+		List<PropertySnapshot> snapshots = new ArrayList<PropertySnapshot>();
+		for (String key : (theKeys.length == 0) ? _mySnapshots.keySet() : Arrays.asList(theKeys)) {
+			PropertySnapshot snapshot = _mySnapshots.get(key);
+			if (snapshot == null) {
+				logger.warning("skipping a preset, snapshot " + key + " does not exist.");
+				continue;
+			}
+			names.add(key);
+			snapshots.add(snapshot);
+		}
+		String path = PresetBank.getPath(skatolo.checkPropertiesPath(thePath));
+		try {
+			PresetBank.write(path, _mySlots, names, snapshots);
+			return true;
+		} catch (IOException e) {
+			logger.warning("Exception during saving " + path + ": " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * maps a preset bank written by savePresetBank, the presets of the bank
+	 * apply to the properties registered when the bank is opened. Returns
+	 * null if the bank can not be read.
+	 */
+	public PresetBank openPresetBank(String thePath) {
+		String path = PresetBank.getPath(skatolo.checkPropertiesPath(thePath));
+		try {
+			return PresetBank.open(path, _mySlots);
+		} catch (IOException e) {
+			logger.warning("can't open " + path + ", " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * restores a preset of a bank like getSnapshot(String) restores a
+	 * snapshot.
+	 */
+	public ControllerProperties getPreset(PresetBank theBank, int theIndex) {
+		PropertySnapshot snapshot = theBank.get(theIndex);
+		if (snapshot != null) {
+			snapshot.recall(_mySlots);
+		}
+		return this;
+	}
+
+	public ControllerProperties getPreset(PresetBank theBank, String theName) {
+		return getPreset(theBank, theBank.indexOf(theName));
+	}
+
+	/**
+	 * stores a preset of a bank as snapshot theKey, e.g. to morph between two
+	 * presets.
+	 */
+	public ControllerProperties copyPreset(PresetBank theBank, int theIndex, String theKey) {
+		PropertySnapshot snapshot = theBank.get(theIndex);
+		if (snapshot != null) {
+			_mySnapshots.put(theKey, snapshot);
+		}
+		return this;
+	}
+
 	ControllerProperties setSnapshot(String theKey, String... theSets) {
 		return this;
 	}
@@ -442,38 +693,67 @@ public class ControllerProperties {
 	 * (thePropertiesPath).
 	 */
 	public ControllerProperties saveSnapshotAs(String thePropertiesPath, String theKey) {
-		Set<ControllerProperty> log = _mySnapshots.get(theKey);
-		if (log == null) {
+		PropertySnapshot snapshot = _mySnapshots.get(theKey);
+		if (snapshot == null) {
 			return this;
 		}
 		thePropertiesPath = skatolo.checkPropertiesPath(thePropertiesPath);
-		format.compile(thePropertiesPath, log);
+		List<ControllerProperty> properties = new ArrayList<ControllerProperty>();
+		for (ControllerProperty cp : snapshot.toProperties(_mySlots)) {
+			if (cp.isActive() && isSerializable(cp.getType(), cp.getValue())) {
+				properties.add(cp);
+			}
+		}
+		Collections.sort(properties, propertyOrder);
+		_mySaved.remove(format.getPath(thePropertiesPath));
+		write(format, thePropertiesPath, properties);
 		return this;
 	}
 
 	/**
-	 * restores properties previously stored as snapshot in memory.
+	 * restores properties previously stored as snapshot in memory. Values are
+	 * set through the setters resolved when the property was registered, in
+	 * the order the properties were registered.
+	 * 
 	 * @see skatolo.ControllerProperties#setSnapshot(String)
 	 */
 	public ControllerProperties getSnapshot(String theKey) {
-		Set<ControllerProperty> l = _mySnapshots.get(theKey);
-		if (l != null) {
-			for (ControllerProperty cp : l) {
-				ControllerInterface<?> ci = skatolo.getController(cp.getAddress());
-				ci = (ci == null) ? skatolo.getGroup(cp.getAddress()) : ci;
-				Method method;
-				try {
-					method = ci.getClass().getMethod(cp.getSetter(), new Class[] { cp.getType() });
-					method.setAccessible(true);
-					method.invoke(ci, new Object[] { cp.getValue() });
-				} catch (Exception e) {
-					logger.severe(e.toString());
-				}
-			}
+		PropertySnapshot snapshot = _mySnapshots.get(theKey);
+		if (snapshot != null) {
+			snapshot.recall(_mySlots);
 		}
 		return this;
 	}
 
+	/**
+	 * prepares a crossfade between two snapshots, use PropertyMorph.set(float)
+	 * to move between them or PropertyMorph.start(int) to morph over time.
+	 * Returns null if one of the snapshots does not exist.
+	 * 
+	 * @see skatolo.PropertyMorph
+	 */
+	public PropertyMorph morph(String theFrom, String theTo) {
+		PropertySnapshot from = _mySnapshots.get(theFrom);
+		PropertySnapshot to = _mySnapshots.get(theTo);
+		if (from == null || to == null) {
+			logger.warning("can't morph, snapshot " + (from == null ? theFrom : theTo) + " does not exist.");
+			return null;
+		}
+		return new PropertyMorph(skatolo.getPApplet(), _mySlots, from, to);
+	}
+
+	/**
+	 * morphs from one snapshot to another in theDuration milliseconds, a morph
+	 * started before with this method is stopped.
+	 */
+	public PropertyMorph morph(String theFrom, String theTo, int theDuration) {
+		if (_myMorph != null) {
+			_myMorph.stop();
+		}
+		_myMorph = morph(theFrom, theTo);
+		return (_myMorph == null) ? null : _myMorph.start(theDuration);
+	}
+
 	/**
 	 * properties stored in memory can be accessed by index,
 	 * getSnapshotIndices() returns the index of the snapshot list.
@@ -489,19 +769,240 @@ public class ControllerProperties {
 		return load(skatolo.getPApplet().sketchPath(defaultName + "." + format.extension));
 	}
 
+	/**
+	 * loads properties from a file, the format is chosen by the extension of
+	 * the file. When thePropertiesPath has no known extension the extension
+	 * of each format is tried.
+	 */
 	public boolean load(String thePropertiesPath) {
-		thePropertiesPath = skatolo.checkPropertiesPath(thePropertiesPath);
+		String path = load(skatolo.checkPropertiesPath(thePropertiesPath), controllers);
+		if (path == null) {
+			return false;
+		}
+		_mySaved.remove(path);
+		return true;
+	}
+
+	/**
+	 * reads a properties file and its journal in the background and applies
+	 * the values on the animation thread before the next frame is drawn. The
+	 * returned Future tells if the file could be read.
+	 * 
+	 * @see skatolo.ControllerProperties#load(String)
+	 */
+	public Future<Boolean> loadInBackground(String thePropertiesPath) {
+		final String path = skatolo.checkPropertiesPath(thePropertiesPath);
+		return Skatolo.getBackgroundExecutor().submit(new Callable<Boolean>() {
+			public Boolean call() {
+				final PendingValues values = new PendingValues();
+				final String file = load(path, values);
+				if (file == null) {
+					return false;
+				}
+				skatolo.invokeLater(new Runnable() {
+					public void run() {
+						values.apply();
+						_mySaved.remove(file);
+					}
+				});
+				return true;
+			}
+		});
+	}
+
+	public Future<Boolean> loadInBackground() {
+		return loadInBackground(skatolo.getPApplet().sketchPath(defaultName + "." + format.extension));
+	}
+
+	/**
+	 * reads a properties file into theTarget and returns the path of the file
+	 * which was read, or null.
+	 */
+	private String load(String thePropertiesPath, PropertyTarget theTarget) {
 		for (Format myFormat : Format.values()) {
 			if (thePropertiesPath.toLowerCase().endsWith(myFormat.extension)) {
-				return myFormat.get().load(thePropertiesPath);
+				return load(myFormat, thePropertiesPath, theTarget) ? thePropertiesPath : null;
 			}
 		}
-		return false;
+		for (Format myFormat : Format.values()) {
+			String path = thePropertiesPath + "." + myFormat.extension;
+			if (new File(path).exists()) {
+				return load(myFormat, path, theTarget) ? path : null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * reads a properties file and replays the changes saved to its journal by
+	 * saveDelta.
+	 */
+	private boolean load(Format theFormat, String thePropertiesPath, PropertyTarget theTarget) {
+		if (!theFormat.get().load(thePropertiesPath, theTarget)) {
+			return false;
+		}
+		if (new File(PropertyJournal.getPath(thePropertiesPath)).exists()) {
+			try {
+				logger.info("replayed " + _myJournal.replay(thePropertiesPath, theTarget) + " journal blocks.");
+			} catch (IOException e) {
+				logger.warning("Exception during loading: " + e);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * writes theProperties to a properties file on the calling thread once a
+	 * background save of the same file finished.
+	 */
+	private boolean write(Format theFormat, String thePropertiesPath, List<ControllerProperty> theProperties) {
+		String path = theFormat.getPath(thePropertiesPath);
+		await(path);
+		return write(theFormat, path, theProperties, getSets(theProperties), _myJournal.length(path));
+	}
+
+	/**
+	 * writes theProperties to a properties file, a properties file written
+	 * completely replaces the changes in its journal. theJournalLength is the
+	 * length of the journal when the values were read.
+	 */
+	private boolean write(Format theFormat, String thePropertiesPath, List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets, long theJournalLength) {
+		if (!theFormat.compile(thePropertiesPath, theProperties, theSets)) {
+			return false;
+		}
+		_myJournal.delete(theFormat.getPath(thePropertiesPath), theJournalLength);
+		return true;
+	}
+
+	/**
+	 * waits until a background save of the file thePropertiesPath finished,
+	 * saves of the same file are written one after the other.
+	 */
+	private void await(String thePropertiesPath) {
+		Future<Boolean> pending;
+		synchronized (_myPendingSaves) {
+			pending = _myPendingSaves.get(thePropertiesPath);
+		}
+		if (pending == null) {
+			return;
+		}
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.warning("Exception during saving: " + e.getCause());
+		}
+		synchronized (_myPendingSaves) {
+			if (_myPendingSaves.get(thePropertiesPath) == pending) {
+				_myPendingSaves.remove(thePropertiesPath);
+			}
+		}
+	}
+
+	/**
+	 * saves the properties which changed since the last delta into the
+	 * default properties file.
+	 * 
+	 * @see skatolo.ControllerProperties#saveDelta(String)
+	 */
+	public boolean saveDelta() {
+		return saveDelta(skatolo.getPApplet().sketchPath(defaultName));
 	}
 
 	/**
-	 * use ControllerProperties.SERIALIZED, ControllerProperties.XML or
-	 * ControllerProperties.JSON as parameter.
+	 * saves only the properties which changed since the last call of
+	 * saveDelta or compact for the same file. The changes are appended to a
+	 * journal next to the properties file (e.g. skatolo.skb.journal) which is
+	 * replayed by load. Once the journal holds more than the journal limit of
+	 * changes, or a changed value can only be stored by the properties file,
+	 * the journal is compacted into the properties file. The first call for a
+	 * file writes the complete properties file.
+	 * 
+	 * After a crash load restores the values of the last properties file
+	 * which was written completely and of the journal blocks which were
+	 * written completely after it, a block which was being written is
+	 * dropped. A journal is only replayed over the properties file it was
+	 * written for, when a crash happens after a compaction replaced the
+	 * properties file but before the journal was deleted, the journal is
+	 * ignored.
+	 */
+	public boolean saveDelta(String thePropertiesPath) {
+		thePropertiesPath = format.getPath(skatolo.checkPropertiesPath(thePropertiesPath));
+		await(thePropertiesPath);
+		PropertySnapshot saved = _mySaved.get(thePropertiesPath);
+		if (saved == null || !new File(thePropertiesPath).exists()) {
+			return compact(thePropertiesPath, PropertySnapshot.capture(_mySlots, saved));
+		}
+		PropertySnapshot current = PropertySnapshot.capture(_mySlots, saved);
+		List<ControllerProperty> changes = new ArrayList<ControllerProperty>();
+		for (ControllerProperty cp : current.toProperties(current.changes(_mySlots, saved))) {
+			if (!cp.isActive()) {
+				continue;
+			}
+			if (cp.getValue() == null || PropertyAccessor.typeOf(cp.getType(), cp.getValue()) == PropertyAccessor.UNSUPPORTED) {
+				return compact(thePropertiesPath, current);
+			}
+			cp.setId(cp.getController().getId());
+			changes.add(cp);
+		}
+		if (!changes.isEmpty()) {
+			try {
+				if (_myJournal.append(thePropertiesPath, changes) >= _myJournalLimit) {
+					return compact(thePropertiesPath, current);
+				}
+			} catch (IOException e) {
+				logger.warning("Exception during saving: " + e);
+				return false;
+			}
+		}
+		_mySaved.put(thePropertiesPath, current);
+		return true;
+	}
+
+	/**
+	 * writes the current values into the properties file and deletes its
+	 * journal.
+	 */
+	public boolean compact(String thePropertiesPath) {
+		thePropertiesPath = format.getPath(skatolo.checkPropertiesPath(thePropertiesPath));
+		await(thePropertiesPath);
+		return compact(thePropertiesPath, PropertySnapshot.capture(_mySlots, _mySaved.get(thePropertiesPath)));
+	}
+
+	private boolean compact(String thePropertiesPath, PropertySnapshot theValues) {
+		List<ControllerProperty> properties = new ArrayList<ControllerProperty>();
+		for (ControllerProperty cp : theValues.toProperties(_mySlots)) {
+			if (cp.isActive() && isSerializable(cp.getType(), cp.getValue())) {
+				cp.setId(cp.getController().getId());
+				properties.add(cp);
+			}
+		}
+		Collections.sort(properties, propertyOrder);
+		if (!write(format, thePropertiesPath, properties)) {
+			return false;
+		}
+		_mySaved.put(thePropertiesPath, theValues);
+		return true;
+	}
+
+	/**
+	 * sets the number of journal blocks written by saveDelta after which the
+	 * journal is compacted into the properties file, 64 by default.
+	 */
+	public ControllerProperties setJournalLimit(int theBlocks) {
+		_myJournalLimit = Math.max(1, theBlocks);
+		return this;
+	}
+
+	public int getJournalLimit() {
+		return _myJournalLimit;
+	}
+
+	/**
+	 * use ControllerProperties.SERIALIZED, ControllerProperties.XML,
+	 * ControllerProperties.JSON or ControllerProperties.BINARY as parameter.
 	 */
 	public void setFormat(Format theFormatId) {
 		format = theFormatId;
@@ -513,8 +1014,8 @@ public class ControllerProperties {
 	 */
 	public boolean save() {
 		System.out.println("saving with format " + format + " (" + format.extension + ") " + skatolo.getPApplet().sketchPath(defaultName));
-		format.compile(skatolo.getPApplet().sketchPath(defaultName), allProperties.keySet());
-		return true;
+		_mySaved.remove(format.getPath(skatolo.getPApplet().sketchPath(defaultName)));
+		return write(format, skatolo.getPApplet().sketchPath(defaultName), update(allProperties.keySet()));
 	}
 
 	/**
@@ -523,8 +1024,57 @@ public class ControllerProperties {
 	 */
 	public boolean saveAs(String thePropertiesPath) {
 		thePropertiesPath = skatolo.checkPropertiesPath(thePropertiesPath);
-		format.compile(thePropertiesPath, allProperties.keySet());
-		return true;
+		_mySaved.remove(format.getPath(thePropertiesPath));
+		return write(format, thePropertiesPath, update(allProperties.keySet()));
+	}
+
+	/**
+	 * saves all registered properties in the background. The values are read
+	 * on the calling thread, the file is written by a background thread. The
+	 * returned Future tells if the file was written. Other saves of the same
+	 * file wait until the background save finished.
+	 * 
+	 * @see skatolo.ControllerProperties#saveAs(String)
+	 */
+	public Future<Boolean> saveInBackground(String thePropertiesPath) {
+		final Format f = format;
+		final String path = f.getPath(skatolo.checkPropertiesPath(thePropertiesPath));
+		final Map<ControllerProperty, Set<String>> sets = new IdentityHashMap<ControllerProperty, Set<String>>();
+		final List<ControllerProperty> properties = copy(update(allProperties.keySet()), sets);
+		final long journal = _myJournal.length(path);
+		_mySaved.remove(path);
+		synchronized (_myPendingSaves) {
+			Future<Boolean> pending = Skatolo.getBackgroundExecutor().submit(new Callable<Boolean>() {
+				public Boolean call() {
+					return write(f, path, properties, sets, journal);
+				}
+			});
+			_myPendingSaves.put(path, pending);
+			return pending;
+		}
+	}
+
+	public Future<Boolean> saveInBackground() {
+		return saveInBackground(skatolo.getPApplet().sketchPath(defaultName));
+	}
+
+	/**
+	 * returns copies of theProperties which are not changed by later updates,
+	 * the sets of each copy are captured into theSets.
+	 */
+	private List<ControllerProperty> copy(List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets) {
+		List<ControllerProperty> list = new ArrayList<ControllerProperty>(theProperties.size());
+		for (ControllerProperty cp : theProperties) {
+			try {
+				ControllerProperty copy = (ControllerProperty) cp.clone();
+				copy.setValue(PropertySnapshot.copy(cp.getValue()));
+				theSets.put(copy, getSets(cp));
+				list.add(copy);
+			} catch (CloneNotSupportedException e) {
+				logger.severe("" + e);
+			}
+		}
+		return list;
 	}
 
 	/**
@@ -548,8 +1098,8 @@ public class ControllerProperties {
 				}
 			}
 		}
-		format.compile(thePropertiesPath, sets);
-		return true;
+		_mySaved.remove(format.getPath(thePropertiesPath));
+		return write(format, thePropertiesPath, update(sets));
 	}
 
 	/**
@@ -571,174 +1121,363 @@ public class ControllerProperties {
 	}
 
 	interface PropertiesStorageFormat {
-		public void compile(Set<ControllerProperty> theProperties, String thePropertiesPath);
+		/**
+		 * writes theProperties with their current values and the names of
+		 * their sets to a file, returns false if the file could not be
+		 * written completely.
+		 */
+		public boolean compile(List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets, String thePropertiesPath);
+
+		/**
+		 * reads a properties file and passes each value to theTarget.
+		 */
+		public boolean load(String thePropertiesPath, PropertyTarget theTarget);
 
-		public boolean load(String thePropertiesPath);
+	}
 
+	/**
+	 * receives the values read from a properties file, values are either
+	 * applied to the controllers right away or collected by a background load
+	 * and applied before the next frame.
+	 */
+	interface PropertyTarget {
+		public void set(String theAddress, String theSetter, String theGetter, Integer theId, Class<?> theType, Object theValue, Collection<String> theSets);
 	}
 
-	class XMLFormat implements PropertiesStorageFormat {
-		public void compile(Set<ControllerProperty> theProperties, String thePropertiesPath) {
-			System.out.println("Dont use the XMLFormat yet, it is not fully implemented with 0.5.9, use SERIALIZED instead.");
-			System.out.println("Compiling with XMLFormat");
-			StringBuffer xml = new StringBuffer();
-			xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-			xml.append("<properties name=\"" + thePropertiesPath + "\">\n");
-			for (ControllerProperty cp : theProperties) {
-				if (cp.isActive()) {
-					updatePropertyValue(cp);
-					xml.append(getXML(cp));
-				}
+	/**
+	 * collects the values of a background load.
+	 */
+	class PendingValues implements PropertyTarget {
+
+		private final List<Object[]> values = new ArrayList<Object[]>();
+
+		public void set(String theAddress, String theSetter, String theGetter, Integer theId, Class<?> theType, Object theValue, Collection<String> theSets) {
+			values.add(new Object[] { theAddress, theSetter, theGetter, theId, theType, theValue, theSets });
+		}
+
+		@SuppressWarnings("unchecked") void apply() {
+			for (Object[] v : values) {
+				ControllerProperties.this.apply((String) v[0], (String) v[1], (String) v[2], (Integer) v[3], (Class<?>) v[4], v[5], (Collection<String>) v[6]);
 			}
-			xml.append("</properties>");
-			skatolo.getPApplet().saveStrings(thePropertiesPath, PApplet.split(xml.toString(), "\n"));
-			System.out.println("saving xml, " + thePropertiesPath);
 		}
+	}
+
+	/**
+	 * A streaming XML format, each property is written as one element on its
+	 * own line with its address, setter, getter, id, type and sets as
+	 * attributes and its value as text. Properties are written in a stable
+	 * order so that files can be compared with a diff tool.
+	 */
+	static class XMLFormat implements PropertiesStorageFormat {
+
+		static final int VERSION = 1;
 
-		public boolean load(String thePropertiesPath) {
-			String s;
+		public boolean compile(List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets, String thePropertiesPath) {
+			List<ControllerProperty> propertiesToBeSaved = typed(theProperties);
 			try {
-				s = PApplet.join(skatolo.getPApplet().loadStrings(thePropertiesPath), "\n");
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(thePropertiesPath));
+				try {
+					XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+					xml.writeStartDocument("UTF-8", "1.0");
+					xml.writeCharacters("\n");
+					xml.writeStartElement("properties");
+					xml.writeAttribute("version", String.valueOf(VERSION));
+					for (ControllerProperty cp : propertiesToBeSaved) {
+						byte type = PropertyAccessor.typeOf(cp.getType(), cp.getValue());
+						xml.writeCharacters("\n\t");
+						xml.writeStartElement("property");
+						xml.writeAttribute("address", cp.getAddress());
+						xml.writeAttribute("setter", cp.getSetter());
+						xml.writeAttribute("getter", cp.getGetter());
+						xml.writeAttribute("id", String.valueOf(cp.getId()));
+						xml.writeAttribute("type", PropertyAccessor.typeName(type));
+						StringBuilder sets = new StringBuilder();
+						for (String set : theSets.get(cp)) {
+							sets.append(sets.length() == 0 ? "" : ",").append(set);
+						}
+						xml.writeAttribute("sets", sets.toString());
+						xml.writeCharacters(PropertyAccessor.format(type, cp.getValue()));
+						xml.writeEndElement();
+					}
+					xml.writeCharacters("\n");
+					xml.writeEndElement();
+					xml.writeCharacters("\n");
+					xml.writeEndDocument();
+					xml.close();
+				} finally {
+					out.close();
+				}
+				logger.info(propertiesToBeSaved.size() + " items saved to " + thePropertiesPath + ".");
 			} catch (Exception e) {
-				logger.warning(thePropertiesPath + ", file not found.");
+				logger.warning("Exception during saving: " + e);
 				return false;
 			}
-			System.out.println("loading xml \n" + s);
+			return true;
+		}
+
+		public boolean load(String thePropertiesPath, PropertyTarget theTarget) {
 			try {
-				DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-				DocumentBuilder db = dbf.newDocumentBuilder();
-				InputSource is = new InputSource();
-				is.setCharacterStream(new StringReader(s));
-				Document doc = db.parse(is);
-				doc.getDocumentElement().normalize();
-				NodeList nodeLst = doc.getElementsByTagName("property");
-				for (int i = 0; i < nodeLst.getLength(); i++) {
-					Node node = nodeLst.item(i);
-					if (node.getNodeType() == Node.ELEMENT_NODE) {
-						Element fstElmnt = (Element) node;
-						String myAddress = getElement(fstElmnt, "address");
-						String mySetter = getElement(fstElmnt, "setter");
-						String myType = getElement(fstElmnt, "type");
-						String myValue = getElement(fstElmnt, "value");
-						// String myClass = getElement(fstElmnt, "class");
-						// String myGetter = getElement(fstElmnt, "getter");
-						try {
-							System.out.print("setting controller " + myAddress + "   ");
-							ControllerInterface<?> ci = skatolo.getController(myAddress);
-							ci = (ci == null) ? skatolo.getGroup(myAddress) : ci;
-							System.out.println(ci);
-							Method method;
+				InputStream in = new BufferedInputStream(new FileInputStream(thePropertiesPath));
+				try {
+					XMLInputFactory factory = XMLInputFactory.newInstance();
+					factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+					factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+					XMLStreamReader xml = factory.createXMLStreamReader(in);
+					while (xml.hasNext()) {
+						if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+							continue;
+						}
+						if ("properties".equals(xml.getLocalName())) {
+							String version = xml.getAttributeValue(null, "version");
+							if (version != null && Integer.parseInt(version) > VERSION) {
+								logger.warning(thePropertiesPath + " uses the unsupported version " + version + ".");
+								return false;
+							}
+						} else if ("property".equals(xml.getLocalName())) {
+							String address = xml.getAttributeValue(null, "address");
+							String setter = xml.getAttributeValue(null, "setter");
+							String getter = xml.getAttributeValue(null, "getter");
+							String id = xml.getAttributeValue(null, "id");
+							byte type = PropertyAccessor.typeOf(xml.getAttributeValue(null, "type"));
+							String sets = xml.getAttributeValue(null, "sets");
+							String value = xml.getElementText();
+							if (address == null || setter == null || type == PropertyAccessor.UNSUPPORTED) {
+								logger.warning("skipping a property at line " + xml.getLocation().getLineNumber() + ".");
+								continue;
+							}
 							try {
-								Class<?> c = getClass(myType);
-								System.out.println(myType + " / " + c);
-								method = ci.getClass().getMethod(mySetter, new Class[] { c });
-								method.setAccessible(true);
-								method.invoke(ci, new Object[] { getValue(myValue, myType, c) });
-							} catch (Exception e) {
-								logger.severe(e.toString());
+								theTarget.set(address, setter, getter, id == null ? null : Integer.valueOf(id), PropertyAccessor.classOf(type), PropertyAccessor.parse(type, value),
+										sets == null || sets.isEmpty() ? null : Arrays.asList(sets.split(",")));
+							} catch (NumberFormatException e) {
+								logger.warning("skipping a property, " + address + " " + e);
 							}
-						} catch (Exception e) {
-							logger.warning("skipping a property, " + e);
 						}
 					}
-
+					xml.close();
+				} finally {
+					in.close();
 				}
-			} catch (SAXException e) {
-				logger.warning("SAXException, " + e);
+			} catch (Exception e) {
+				logger.warning("Exception during loading: " + e);
 				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A streaming JSON format, properties are written as an array of objects
+	 * with one property per line in a stable order so that files can be
+	 * compared with a diff tool.
+	 */
+	static class JSONFormat implements PropertiesStorageFormat {
+
+		static final int VERSION = 1;
+
+		public boolean compile(List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets, String thePropertiesPath) {
+			List<ControllerProperty> propertiesToBeSaved = typed(theProperties);
+			try {
+				Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(thePropertiesPath), StandardCharsets.UTF_8));
+				try {
+					out.write("{\n\t\"version\": " + VERSION + ",\n\t\"properties\": [");
+					boolean first = true;
+					for (ControllerProperty cp : propertiesToBeSaved) {
+						byte type = PropertyAccessor.typeOf(cp.getType(), cp.getValue());
+						out.write(first ? "\n\t\t{" : ",\n\t\t{");
+						first = false;
+						out.write("\"address\": " + quote(cp.getAddress()));
+						out.write(", \"setter\": " + quote(cp.getSetter()));
+						out.write(", \"getter\": " + quote(cp.getGetter()));
+						out.write(", \"id\": " + cp.getId());
+						out.write(", \"type\": " + quote(PropertyAccessor.typeName(type)));
+						out.write(", \"value\": ");
+						writeValue(out, type, cp.getValue());
+						out.write(", \"sets\": [");
+						boolean firstSet = true;
+						for (String set : theSets.get(cp)) {
+							out.write((firstSet ? "" : ", ") + quote(set));
+							firstSet = false;
+						}
+						out.write("]}");
+					}
+					out.write("\n\t]\n}\n");
+				} finally {
+					out.close();
+				}
+				logger.info(propertiesToBeSaved.size() + " items saved to " + thePropertiesPath + ".");
 			} catch (IOException e) {
-				logger.warning("IOException, " + e);
-				return false;
-			} catch (ParserConfigurationException e) {
-				logger.warning("ParserConfigurationException, " + e);
+				logger.warning("Exception during saving: " + e);
 				return false;
 			}
 			return true;
 		}
 
-		private Object getValue(String theValue, String theType, Class<?> theClass) {
-			if (theClass == int.class) {
-				return Integer.parseInt(theValue);
-			} else if (theClass == float.class) {
-				return Float.parseFloat(theValue);
-			} else if (theClass == boolean.class) {
-				return Boolean.parseBoolean(theValue);
-			} else if (theClass.isArray()) {
-				System.out.println("this is an array: " + theType + ", " + theValue + ", " + theClass);
-				int dim = 0;
-				while (true) {
-					if (theType.charAt(dim) != '[' || dim >= theType.length()) {
-						break;
+		public boolean load(String thePropertiesPath, PropertyTarget theTarget) {
+			try {
+				Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(thePropertiesPath), StandardCharsets.UTF_8));
+				try {
+					JSONReader json = new JSONReader(in);
+					json.beginObject();
+					while (json.hasNext()) {
+						String name = json.nextName();
+						if ("version".equals(name)) {
+							String version = json.nextValue();
+							if (Integer.parseInt(version) > VERSION) {
+								logger.warning(thePropertiesPath + " uses the unsupported version " + version + ".");
+								return false;
+							}
+						} else if ("properties".equals(name)) {
+							json.beginArray();
+							while (json.hasNext()) {
+								loadProperty(json, theTarget);
+							}
+							json.endArray();
+						} else {
+							json.skipValue();
+						}
 					}
-					dim++;
+					json.endObject();
+				} finally {
+					in.close();
 				}
-			} else {
-				System.out.println("is array? " + theClass.isArray());
+			} catch (Exception e) {
+				logger.warning("Exception during loading: " + e);
+				return false;
 			}
-			return theValue;
+			return true;
 		}
 
-		private Class<?> getClass(String theType) {
-			if (theType.equals("int")) {
-				return int.class;
-			} else if (theType.equals("float")) {
-				return float.class;
-			} else if (theType.equals("String")) {
-				return String.class;
+		private void loadProperty(JSONReader theReader, PropertyTarget theTarget) throws IOException {
+			String address = null;
+			String setter = null;
+			String getter = null;
+			Integer id = null;
+			byte type = PropertyAccessor.UNSUPPORTED;
+			String value = null;
+			List<String> sets = null;
+			theReader.beginObject();
+			while (theReader.hasNext()) {
+				String name = theReader.nextName();
+				if (theReader.peek() == JSONReader.Token.NULL) {
+					theReader.skipValue();
+				} else if ("address".equals(name)) {
+					address = theReader.nextString();
+				} else if ("setter".equals(name)) {
+					setter = theReader.nextString();
+				} else if ("getter".equals(name)) {
+					getter = theReader.nextString();
+				} else if ("id".equals(name)) {
+					id = Integer.valueOf(theReader.nextValue());
+				} else if ("type".equals(name)) {
+					type = PropertyAccessor.typeOf(theReader.nextString());
+				} else if ("value".equals(name)) {
+					if (theReader.peek() == JSONReader.Token.BEGIN_ARRAY) {
+						// array elements are collected as text and parsed once the type is known.
+						StringBuilder s = new StringBuilder();
+						theReader.beginArray();
+						while (theReader.hasNext()) {
+							s.append(s.length() == 0 ? "" : " ").append(theReader.nextValue());
+						}
+						theReader.endArray();
+						value = s.toString();
+					} else {
+						value = theReader.nextValue();
+					}
+				} else if ("sets".equals(name)) {
+					sets = new ArrayList<String>();
+					theReader.beginArray();
+					while (theReader.hasNext()) {
+						sets.add(theReader.nextString());
+					}
+					theReader.endArray();
+				} else {
+					theReader.skipValue();
+				}
+			}
+			theReader.endObject();
+			if (address == null || setter == null || value == null || type == PropertyAccessor.UNSUPPORTED) {
+				logger.warning("skipping a property, " + address);
+				return;
 			}
 			try {
-				return Class.forName(theType);
-			} catch (ClassNotFoundException e) {
-				logger.warning("ClassNotFoundException, " + e);
+				theTarget.set(address, setter, getter, id, PropertyAccessor.classOf(type), PropertyAccessor.parse(type, value), sets);
+			} catch (NumberFormatException e) {
+				logger.warning("skipping a property, " + address + " " + e);
 			}
-			return null;
-		}
-
-		private String getElement(Element theElement, String theName) {
-			NodeList fstNmElmntLst = theElement.getElementsByTagName(theName);
-			Element fstNmElmnt = (Element) fstNmElmntLst.item(0);
-			NodeList fstNm = fstNmElmnt.getChildNodes();
-			return ((Node) fstNm.item(0)).getNodeValue();
 		}
 
-		public String getXML(ControllerProperty theProperty) {
-			// Mapping Between JSON and Java Entities
-			// http://code.google.com/p/json-simple/wiki/MappingBetweenJSONAndJavaEntities
-			String s = "\t<property>\n";
-			s += "\t\t<address>" + theProperty.getAddress() + "</address>\n";
-			s += "\t\t<class>" + Hacks.formatGetClass(theProperty.getController().getClass()) + "</class>\n";
-			s += "\t\t<setter>" + theProperty.getSetter() + "</setter>\n";
-			s += "\t\t<getter>" + theProperty.getGetter() + "</getter>\n";
-			s += "\t\t<type>" + Hacks.formatGetClass(theProperty.getType()) + "</type>\n";
-			s += "\t\t<value>" + cdata(OPEN, theProperty.getValue().getClass())
-					+ (theProperty.getValue().getClass().isArray() ? Hacks.arrayToString(theProperty.getValue()) : theProperty.getValue())
-					+ cdata(CLOSE, theProperty.getValue().getClass()) + "</value>\n";
-			s += "\t</property>\n";
-			return s;
+		private void writeValue(Writer theOut, byte theType, Object theValue) throws IOException {
+			if (theType == PropertyAccessor.INT_ARRAY) {
+				int[] values = (int[]) theValue;
+				theOut.write("[");
+				for (int i = 0; i < values.length; i++) {
+					theOut.write((i == 0 ? "" : ", ") + values[i]);
+				}
+				theOut.write("]");
+			} else if (theType == PropertyAccessor.FLOAT_ARRAY) {
+				float[] values = (float[]) theValue;
+				theOut.write("[");
+				for (int i = 0; i < values.length; i++) {
+					theOut.write((i == 0 ? "" : ", ") + number(values[i]));
+				}
+				theOut.write("]");
+			} else if (theType == PropertyAccessor.STRING) {
+				theOut.write(quote((String) theValue));
+			} else if (theType == PropertyAccessor.FLOAT || theType == PropertyAccessor.DOUBLE) {
+				theOut.write(number(((Number) theValue).doubleValue()));
+			} else {
+				theOut.write(String.valueOf(theValue));
+			}
 		}
 
-		private String cdata(int a, Class<?> c) {
-			if (c == String.class || c.isArray()) {
-				return (a == OPEN ? "<![CDATA[" : "]]>");
-			}
-			return "";
+		/**
+		 * NaN and infinity are not valid json numbers and are written as
+		 * strings.
+		 */
+		private String number(float theValue) {
+			return (Float.isNaN(theValue) || Float.isInfinite(theValue)) ? quote(String.valueOf(theValue)) : String.valueOf(theValue);
 		}
-	}
 
-	class JSONFormat implements PropertiesStorageFormat {
-		public void compile(Set<ControllerProperty> theProperties, String thePropertiesPath) {
-			System.out.println("Dont use the JSONFormat yet, it is not fully implemented with 0.5.9, use SERIALIZED instead.");
-			System.out.println("Compiling with JSONFormat");
+		private String number(double theValue) {
+			return (Double.isNaN(theValue) || Double.isInfinite(theValue)) ? quote(String.valueOf(theValue)) : String.valueOf(theValue);
 		}
 
-		public boolean load(String thePropertiesPath) {
-			return false;
+		private String quote(String theString) {
+			StringBuilder s = new StringBuilder(theString.length() + 2);
+			s.append('"');
+			for (int i = 0; i < theString.length(); i++) {
+				char c = theString.charAt(i);
+				switch (c) {
+				case '"':
+					s.append("\\\"");
+					break;
+				case '\\':
+					s.append("\\\\");
+					break;
+				case '\n':
+					s.append("\\n");
+					break;
+				case '\r':
+					s.append("\\r");
+					break;
+				case '\t':
+					s.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						s.append(String.format("\\u%04x", (int) c));
+					} else {
+						s.append(c);
+					}
+				}
+			}
+			return s.append('"').toString();
 		}
 	}
 
-	class SerializedFormat implements PropertiesStorageFormat {
+	static class SerializedFormat implements PropertiesStorageFormat {
 
-		public boolean load(String thePropertiesPath) {
+		public boolean load(String thePropertiesPath, PropertyTarget theTarget) {
 			try {
 				FileInputStream fis = new FileInputStream(thePropertiesPath);
 				ObjectInputStream ois = new ObjectInputStream(fis);
@@ -748,18 +1487,7 @@ public class ControllerProperties {
 				for (int i = 0; i < size; i++) {
 					try {
 						ControllerProperty cp = (ControllerProperty) ois.readObject();
-						ControllerInterface<?> ci = skatolo.getController(cp.getAddress());
-						ci = (ci == null) ? skatolo.getGroup(cp.getAddress()) : ci;
-						ci.setId(cp.getId());
-						Method method;
-						try {
-							method = ci.getClass().getMethod(cp.getSetter(), new Class[] { cp.getType() });
-							method.setAccessible(true);
-							method.invoke(ci, new Object[] { cp.getValue() });
-						} catch (Exception e) {
-							logger.severe(e.toString());
-						}
-
+						theTarget.set(cp.getAddress(), cp.getSetter(), cp.getGetter(), cp.getId(), cp.getType(), cp.getValue(), null);
 					} catch (Exception e) {
 						logger.warning("skipping a property, " + e);
 					}
@@ -772,42 +1500,243 @@ public class ControllerProperties {
 			return true;
 		}
 
-		public void compile(Set<ControllerProperty> theProperties, String thePropertiesPath) {
-			int active = 0;
-			int total = 0;
-			HashSet<ControllerProperty> propertiesToBeSaved = new HashSet<ControllerProperty>();
-			for (ControllerProperty cp : theProperties) {
-				if (cp.isActive()) {
-					if (updatePropertyValue(cp)) {
-						active++;
-						cp.setId(cp.getController().getId());
-						propertiesToBeSaved.add(cp);
-					}
-				}
-				total++;
-			}
-
-			int ignored = total - active;
-
+		public boolean compile(List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets, String thePropertiesPath) {
 			try {
 				FileOutputStream fos = new FileOutputStream(thePropertiesPath);
 				ObjectOutputStream oos = new ObjectOutputStream(fos);
 
 				logger.info("Saving property-items to " + thePropertiesPath);
-				oos.writeInt(active);
+				oos.writeInt(theProperties.size());
 
-				for (ControllerProperty cp : propertiesToBeSaved) {
-					if (cp.isActive()) {
-						oos.writeObject(cp);
-					}
+				for (ControllerProperty cp : theProperties) {
+					oos.writeObject(cp);
 				}
-				logger.info(active + " items saved, " + (ignored) + " items ignored. Done saving properties.");
+				logger.info(theProperties.size() + " items saved. Done saving properties.");
 				oos.flush();
 				oos.close();
 				fos.close();
 			} catch (Exception e) {
 				logger.warning("Exception during serialization: " + e);
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A compact binary format. A file starts with a magic number and a
+	 * version, followed by a table of the addresses, setters and getters used
+	 * by the properties, and the properties themselves which refer to the
+	 * table by index. Only primitives, strings and primitive arrays are
+	 * stored, loading a file never creates objects of classes named inside
+	 * the file.
+	 */
+	static class BinaryFormat implements PropertiesStorageFormat {
+
+		static final int MAGIC = 0x534b4250;
+
+		static final int VERSION = 1;
+
+		public boolean compile(List<ControllerProperty> theProperties, Map<ControllerProperty, Set<String>> theSets, String thePropertiesPath) {
+			List<ControllerProperty> propertiesToBeSaved = typed(theProperties);
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + propertiesToBeSaved.size() * 24);
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				write(out, propertiesToBeSaved);
+				out.flush();
+				FileOutputStream fos = new FileOutputStream(thePropertiesPath);
+				try {
+					bytes.writeTo(fos);
+				} finally {
+					fos.close();
+				}
+				logger.info(propertiesToBeSaved.size() + " items saved, " + (theProperties.size() - propertiesToBeSaved.size()) + " items ignored. Done saving properties.");
+			} catch (IOException e) {
+				logger.warning("Exception during saving: " + e);
+				return false;
+			}
+			return true;
+		}
+
+		public boolean load(String thePropertiesPath, PropertyTarget theTarget) {
+			try {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(Paths.get(thePropertiesPath))));
+				if (in.readInt() != MAGIC) {
+					logger.warning(thePropertiesPath + " is not a binary properties file.");
+					return false;
+				}
+				int version = in.readUnsignedShort();
+				if (version > VERSION) {
+					logger.warning(thePropertiesPath + " uses the unsupported version " + version + ".");
+					return false;
+				}
+				logger.info("loaded " + read(in, theTarget) + " property-items.");
+			} catch (IOException e) {
+				logger.warning("Exception during loading: " + e);
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * writes a string table and the properties, theProperties must only
+		 * contain values supported by PropertyAccessor.typeOf.
+		 */
+		void write(DataOutputStream theOut, List<ControllerProperty> theProperties) throws IOException {
+			List<String> strings = new ArrayList<String>();
+			Map<String, Integer> indices = new HashMap<String, Integer>();
+			for (ControllerProperty cp : theProperties) {
+				indexOf(cp.getAddress(), strings, indices);
+				indexOf(cp.getSetter(), strings, indices);
+				indexOf(cp.getGetter(), strings, indices);
+			}
+			theOut.writeInt(strings.size());
+			for (String str : strings) {
+				writeString(theOut, str);
+			}
+			theOut.writeInt(theProperties.size());
+			for (ControllerProperty cp : theProperties) {
+				theOut.writeInt(indices.get(cp.getAddress()));
+				theOut.writeInt(indices.get(cp.getSetter()));
+				theOut.writeInt(indices.get(cp.getGetter()));
+				theOut.writeInt(cp.getId());
+				byte type = PropertyAccessor.typeOf(cp.getType(), cp.getValue());
+				theOut.writeByte(type);
+				writeValue(theOut, type, cp.getValue());
+			}
+		}
+
+		/**
+		 * reads a string table and the properties written by write and passes
+		 * them to theTarget, returns the number of properties.
+		 */
+		int read(DataInputStream theIn, PropertyTarget theTarget) throws IOException {
+			String[] strings = new String[readLength(theIn, 4)];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = readString(theIn);
+			}
+			int size = readLength(theIn, 17);
+			for (int i = 0; i < size; i++) {
+				int address = readIndex(theIn, strings.length);
+				String setter = strings[readIndex(theIn, strings.length)];
+				String getter = strings[readIndex(theIn, strings.length)];
+				int id = theIn.readInt();
+				byte type = theIn.readByte();
+				Object value = readValue(theIn, type);
+				theTarget.set(strings[address], setter, getter, id, PropertyAccessor.classOf(type), value, null);
+			}
+			return size;
+		}
+
+		private int indexOf(String theString, List<String> theStrings, Map<String, Integer> theIndices) {
+			Integer index = theIndices.get(theString);
+			if (index == null) {
+				index = theStrings.size();
+				theStrings.add(theString);
+				theIndices.put(theString, index);
+			}
+			return index;
+		}
+
+		private void writeString(DataOutputStream theOut, String theString) throws IOException {
+			byte[] b = theString.getBytes(StandardCharsets.UTF_8);
+			theOut.writeInt(b.length);
+			theOut.write(b);
+		}
+
+		private String readString(DataInputStream theIn) throws IOException {
+			byte[] b = new byte[readLength(theIn, 1)];
+			theIn.readFully(b);
+			return new String(b, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * reads a length and checks it against the remaining bytes so that a
+		 * damaged file can not make us allocate large arrays.
+		 */
+		private int readLength(DataInputStream theIn, int theElementSize) throws IOException {
+			int n = theIn.readInt();
+			if (n < 0 || (long) n * theElementSize > theIn.available()) {
+				throw new IOException("invalid length " + n);
+			}
+			return n;
+		}
+
+		private int readIndex(DataInputStream theIn, int theSize) throws IOException {
+			int n = theIn.readInt();
+			if (n < 0 || n >= theSize) {
+				throw new IOException("invalid string index " + n);
+			}
+			return n;
+		}
+
+		private void writeValue(DataOutputStream theOut, byte theType, Object theValue) throws IOException {
+			switch (theType) {
+			case PropertyAccessor.INT:
+				theOut.writeInt(((Number) theValue).intValue());
+				break;
+			case PropertyAccessor.FLOAT:
+				theOut.writeFloat(((Number) theValue).floatValue());
+				break;
+			case PropertyAccessor.BOOLEAN:
+				theOut.writeBoolean((Boolean) theValue);
+				break;
+			case PropertyAccessor.DOUBLE:
+				theOut.writeDouble(((Number) theValue).doubleValue());
+				break;
+			case PropertyAccessor.LONG:
+				theOut.writeLong(((Number) theValue).longValue());
+				break;
+			case PropertyAccessor.STRING:
+				writeString(theOut, (String) theValue);
+				break;
+			case PropertyAccessor.INT_ARRAY:
+				int[] ints = (int[]) theValue;
+				theOut.writeInt(ints.length);
+				for (int v : ints) {
+					theOut.writeInt(v);
+				}
+				break;
+			case PropertyAccessor.FLOAT_ARRAY:
+				float[] floats = (float[]) theValue;
+				theOut.writeInt(floats.length);
+				for (float v : floats) {
+					theOut.writeFloat(v);
+				}
+				break;
+			}
+		}
+
+		private Object readValue(DataInputStream theIn, byte theType) throws IOException {
+			switch (theType) {
+			case PropertyAccessor.INT:
+				return theIn.readInt();
+			case PropertyAccessor.FLOAT:
+				return theIn.readFloat();
+			case PropertyAccessor.BOOLEAN:
+				return theIn.readBoolean();
+			case PropertyAccessor.DOUBLE:
+				return theIn.readDouble();
+			case PropertyAccessor.LONG:
+				return theIn.readLong();
+			case PropertyAccessor.STRING:
+				return readString(theIn);
+			case PropertyAccessor.INT_ARRAY:
+				int[] ints = new int[readLength(theIn, 4)];
+				for (int i = 0; i < ints.length; i++) {
+					ints[i] = theIn.readInt();
+				}
+				return ints;
+			case PropertyAccessor.FLOAT_ARRAY:
+				float[] floats = new float[readLength(theIn, 4)];
+				for (int i = 0; i < floats.length; i++) {
+					floats[i] = theIn.readFloat();
+				}
+				return floats;
 			}
+			throw new IOException("unknown value type " + theType);
 		}
 	}
 }
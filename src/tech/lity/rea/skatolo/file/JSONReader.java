@@ -0,0 +1,252 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.file;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A small pull parser for JSON used by the JSON properties format. Values are
+ * read one at a time from the underlying reader, so a document is never held
+ * in memory as a whole. Commas are treated like whitespace.
+ */
+class JSONReader {
+
+	enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private int limit;
+	private int line = 1;
+
+	JSONReader(Reader theReader) {
+		reader = theReader;
+	}
+
+	/**
+	 * returns the type of the next value without consuming it.
+	 */
+	Token peek() throws IOException {
+		int c = skipWhitespace();
+		switch (c) {
+		case -1:
+			return Token.END_DOCUMENT;
+		case '{':
+			return Token.BEGIN_OBJECT;
+		case '}':
+			return Token.END_OBJECT;
+		case '[':
+			return Token.BEGIN_ARRAY;
+		case ']':
+			return Token.END_ARRAY;
+		case '"':
+			return Token.STRING;
+		case 't':
+		case 'f':
+			return Token.BOOLEAN;
+		case 'n':
+			return Token.NULL;
+		}
+		return Token.NUMBER;
+	}
+
+	/**
+	 * returns true if the current object or array has more elements.
+	 */
+	boolean hasNext() throws IOException {
+		Token t = peek();
+		return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+	}
+
+	void beginObject() throws IOException {
+		expect('{');
+	}
+
+	void endObject() throws IOException {
+		expect('}');
+	}
+
+	void beginArray() throws IOException {
+		expect('[');
+	}
+
+	void endArray() throws IOException {
+		expect(']');
+	}
+
+	String nextName() throws IOException {
+		String name = nextString();
+		expect(':');
+		return name;
+	}
+
+	String nextString() throws IOException {
+		expect('"');
+		StringBuilder s = new StringBuilder();
+		while (true) {
+			int c = read();
+			if (c == -1) {
+				throw error("unterminated string");
+			} else if (c == '"') {
+				return s.toString();
+			} else if (c == '\\') {
+				c = read();
+				switch (c) {
+				case 'n':
+					s.append('\n');
+					break;
+				case 't':
+					s.append('\t');
+					break;
+				case 'r':
+					s.append('\r');
+					break;
+				case 'b':
+					s.append('\b');
+					break;
+				case 'f':
+					s.append('\f');
+					break;
+				case 'u':
+					int u = 0;
+					for (int i = 0; i < 4; i++) {
+						int d = Character.digit(read(), 16);
+						if (d < 0) {
+							throw error("invalid escape");
+						}
+						u = (u << 4) | d;
+					}
+					s.append((char) u);
+					break;
+				case -1:
+					throw error("unterminated string");
+				default:
+					s.append((char) c);
+				}
+			} else {
+				s.append((char) c);
+			}
+		}
+	}
+
+	/**
+	 * returns the text of the next number, boolean, null or string value.
+	 */
+	String nextValue() throws IOException {
+		if (peek() == Token.STRING) {
+			return nextString();
+		}
+		StringBuilder s = new StringBuilder();
+		while (true) {
+			int c = peekChar();
+			if (c == -1 || c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+				break;
+			}
+			s.append((char) read());
+		}
+		if (s.length() == 0) {
+			throw error("value expected");
+		}
+		return s.toString();
+	}
+
+	/**
+	 * skips the next value including nested objects and arrays.
+	 */
+	void skipValue() throws IOException {
+		switch (peek()) {
+		case BEGIN_OBJECT:
+			beginObject();
+			while (hasNext()) {
+				nextName();
+				skipValue();
+			}
+			endObject();
+			break;
+		case BEGIN_ARRAY:
+			beginArray();
+			while (hasNext()) {
+				skipValue();
+			}
+			endArray();
+			break;
+		case END_OBJECT:
+		case END_ARRAY:
+		case END_DOCUMENT:
+			throw error("value expected");
+		default:
+			nextValue();
+		}
+	}
+
+	private void expect(char theChar) throws IOException {
+		int c = skipWhitespace();
+		if (c != theChar) {
+			throw error("'" + theChar + "' expected");
+		}
+		read();
+	}
+
+	private IOException error(String theMessage) {
+		return new IOException(theMessage + " at line " + line);
+	}
+
+	private int skipWhitespace() throws IOException {
+		while (true) {
+			int c = peekChar();
+			if (c == -1 || !(Character.isWhitespace(c) || c == ',')) {
+				return c;
+			}
+			read();
+		}
+	}
+
+	private int peekChar() throws IOException {
+		if (pos == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			pos = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[pos];
+	}
+
+	private int read() throws IOException {
+		int c = peekChar();
+		if (c != -1) {
+			pos++;
+			if (c == '\n') {
+				line++;
+			}
+		}
+		return c;
+	}
+
+}
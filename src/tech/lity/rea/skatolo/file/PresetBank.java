@@ -0,0 +1,318 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.file;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A preset bank stores many snapshots in one file. The file starts with a
+ * table of the property slots and the names of the presets, followed by one
+ * record of fixed size per preset holding a bit mask of the slots it
+ * contains and the bits of each value. The file is memory-mapped, recalling
+ * a preset reads its record directly from the mapped file without parsing.
+ * 
+ * Only numeric and boolean properties are stored in a bank, like the slot
+ * table of the snapshots the slots of a bank are matched to the registered
+ * properties by address, setter and getter when the bank is opened.
+ * 
+ * @see skatolo.ControllerProperties#openPresetBank(String)
+ */
+public final class PresetBank {
+
+	static final int MAGIC = 0x534b4242;
+
+	static final int VERSION = 1;
+
+	static final String EXTENSION = "skbank";
+
+	// magic, version, offset of the records, slots, presets.
+	private static final int HEADER = 18;
+
+	private final String path;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer;
+
+	private final int recordsOffset;
+
+	private final int recordSize;
+
+	private final int words;
+
+	private final String[] names;
+
+	private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+	// the registered slot and type of each slot of the file, null if the
+	// property is not registered or its type changed.
+	private final PropertySlots.Slot[] slots;
+
+	private final int tableSize;
+
+	private PresetBank(String thePath, FileChannel theChannel, ByteBuffer theBuffer, PropertySlots theSlots) throws IOException {
+		path = thePath;
+		channel = theChannel;
+		buffer = theBuffer;
+		if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC) {
+			throw new IOException(thePath + " is not a preset bank.");
+		}
+		int version = buffer.getShort(4) & 0xffff;
+		if (version > VERSION) {
+			throw new IOException(thePath + " uses the unsupported version " + version + ".");
+		}
+		recordsOffset = buffer.getInt(6);
+		long size = buffer.getLong(10);
+		int slotCount = (int) (size >>> 32);
+		int presetCount = (int) size;
+		words = (slotCount + 63) / 64;
+		recordSize = (words + slotCount) * 8;
+		if (slotCount < 0 || presetCount < 0 || recordsOffset < HEADER || (long) recordsOffset + (long) presetCount * recordSize != buffer.limit()) {
+			throw new IOException(thePath + " is damaged.");
+		}
+
+		byte[] table = new byte[recordsOffset - HEADER];
+		ByteBuffer header = buffer.duplicate();
+		header.position(HEADER);
+		header.get(table);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(table));
+
+		Map<String, PropertySlots.Slot> registered = new HashMap<String, PropertySlots.Slot>();
+		for (int i = 0; i < theSlots.size(); i++) {
+			PropertySlots.Slot slot = theSlots.get(i);
+			if (!slot.isRemoved) {
+				registered.put(key(slot.property.getAddress(), slot.property.getSetter(), slot.property.getGetter()), slot);
+			}
+		}
+		slots = new PropertySlots.Slot[slotCount];
+		for (int i = 0; i < slotCount; i++) {
+			PropertySlots.Slot slot = registered.get(key(in.readUTF(), in.readUTF(), in.readUTF()));
+			byte type = in.readByte();
+			slots[i] = (slot != null && slot.type == type) ? slot : null;
+		}
+		names = new String[presetCount];
+		for (int i = 0; i < presetCount; i++) {
+			names[i] = in.readUTF();
+			if (!indices.containsKey(names[i])) {
+				indices.put(names[i], i);
+			}
+		}
+		tableSize = theSlots.size();
+	}
+
+	private static String key(String theAddress, String theSetter, String theGetter) {
+		return theAddress + "/" + theSetter + "/" + theGetter;
+	}
+
+	static String getPath(String thePath) {
+		return thePath.endsWith("." + EXTENSION) ? thePath : thePath + "." + EXTENSION;
+	}
+
+	/**
+	 * maps a preset bank and matches its slots to theSlots.
+	 */
+	static PresetBank open(String thePath, PropertySlots theSlots) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(thePath, "r");
+		FileChannel channel = file.getChannel();
+		try {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new PresetBank(thePath, channel, buffer, theSlots);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * writes theSnapshots with theNames to a preset bank, only the numeric
+	 * and boolean slots of theSlots are stored. The bank is written to a
+	 * temporary file first which then replaces the file at thePath. On POSIX
+	 * systems a bank which is currently mapped keeps its contents, on Windows
+	 * a mapped file can not be replaced, close() the bank and drop all
+	 * references to it before writing to its path.
+	 */
+	static void write(String thePath, PropertySlots theSlots, List<String> theNames, List<PropertySnapshot> theSnapshots) throws IOException {
+		int[] stored = new int[theSlots.size()];
+		int slotCount = 0;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream table = new DataOutputStream(bytes);
+		for (int i = 0; i < theSlots.size(); i++) {
+			PropertySlots.Slot slot = theSlots.get(i);
+			if (slot.isRemoved || !PropertySnapshot.isPrimitive(slot.type)) {
+				continue;
+			}
+			stored[slotCount++] = i;
+			table.writeUTF(slot.property.getAddress());
+			table.writeUTF(slot.property.getSetter());
+			table.writeUTF(slot.property.getGetter());
+			table.writeByte(slot.type);
+		}
+		for (String name : theNames) {
+			table.writeUTF(name);
+		}
+		// records start at a multiple of 8.
+		while ((HEADER + bytes.size()) % 8 != 0) {
+			table.writeByte(0);
+		}
+		table.flush();
+
+		File file = new File(thePath).getAbsoluteFile();
+		File temp = Files.createTempFile(file.getParentFile().toPath(), file.getName() + ".", ".tmp").toFile();
+		try {
+			write(temp, slotCount, stored, bytes, theNames, theSnapshots);
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+	}
+
+	private static void write(File theFile, int theSlotCount, int[] theStored, ByteArrayOutputStream theTable, List<String> theNames, List<PropertySnapshot> theSnapshots) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(theFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeInt(HEADER + theTable.size());
+			out.writeInt(theSlotCount);
+			out.writeInt(theNames.size());
+			theTable.writeTo(out);
+			int words = (theSlotCount + 63) / 64;
+			long[] mask = new long[words];
+			long[] values = new long[theSlotCount];
+			for (PropertySnapshot snapshot : theSnapshots) {
+				Arrays.fill(mask, 0);
+				Arrays.fill(values, 0);
+				for (int j = 0; j < theSlotCount; j++) {
+					int p = theStored[j] / PropertySnapshot.PAGE_SIZE;
+					int i = theStored[j] % PropertySnapshot.PAGE_SIZE;
+					if (p < snapshot.pages.length && (snapshot.pages[p].mask & (1L << i)) != 0) {
+						mask[j / 64] |= 1L << (j % 64);
+						values[j] = snapshot.pages[p].values[i];
+					}
+				}
+				for (long m : mask) {
+					out.writeLong(m);
+				}
+				for (long v : values) {
+					out.writeLong(v);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * returns the preset at theIndex as a snapshot of the slot table the bank
+	 * was opened with, or null if theIndex is out of range.
+	 */
+	PropertySnapshot get(int theIndex) {
+		if (theIndex < 0 || theIndex >= names.length) {
+			return null;
+		}
+		int record = recordsOffset + theIndex * recordSize;
+		PropertySnapshot.Page[] pages = new PropertySnapshot.Page[(tableSize + PropertySnapshot.PAGE_SIZE - 1) / PropertySnapshot.PAGE_SIZE];
+		long[] masks = new long[pages.length];
+		long[][] values = new long[pages.length][];
+		for (int w = 0; w < words; w++) {
+			for (long m = buffer.getLong(record + w * 8); m != 0; m &= m - 1) {
+				int j = w * 64 + Long.numberOfTrailingZeros(m);
+				PropertySlots.Slot slot = slots[j];
+				if (slot == null) {
+					continue;
+				}
+				int p = slot.index / PropertySnapshot.PAGE_SIZE;
+				int i = slot.index % PropertySnapshot.PAGE_SIZE;
+				if (values[p] == null) {
+					values[p] = new long[PropertySnapshot.PAGE_SIZE];
+				}
+				values[p][i] = buffer.getLong(record + (words + j) * 8);
+				masks[p] |= 1L << i;
+			}
+		}
+		for (int p = 0; p < pages.length; p++) {
+			pages[p] = new PropertySnapshot.Page(masks[p], (values[p] == null) ? new long[PropertySnapshot.PAGE_SIZE] : values[p], null);
+		}
+		return new PropertySnapshot(pages);
+	}
+
+	/**
+	 * returns the number of presets of the bank.
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	public String getName(int theIndex) {
+		return names[theIndex];
+	}
+
+	/**
+	 * returns the index of the first preset with theName, or -1.
+	 */
+	public int indexOf(String theName) {
+		Integer index = indices.get(theName);
+		return (index == null) ? -1 : index;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * closes the file of the bank, the mapping is released once the bank is
+	 * no longer referenced. On Windows the file of a bank can only be
+	 * replaced after its mapping was released.
+	 */
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			ControllerProperties.logger.warning("can't close " + path + ", " + e);
+		}
+	}
+
+}
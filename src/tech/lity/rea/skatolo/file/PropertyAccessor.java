@@ -0,0 +1,310 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.file;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A property accessor holds the getter and setter methods of a property for
+ * one controller class. Accessors are created once per class, setter and
+ * getter and are shared by all controllers of that class, so saving and
+ * loading properties does not look up methods by name for each property.
+ */
+final class PropertyAccessor {
+
+	/**
+	 * type codes of the values which can be stored without java
+	 * serialization, see typeOf(Class).
+	 */
+	static final byte UNSUPPORTED = 0;
+	static final byte INT = 1;
+	static final byte FLOAT = 2;
+	static final byte BOOLEAN = 3;
+	static final byte DOUBLE = 4;
+	static final byte LONG = 5;
+	static final byte STRING = 6;
+	static final byte INT_ARRAY = 7;
+	static final byte FLOAT_ARRAY = 8;
+
+	// the accessors of each class are stored with the class, they do not keep
+	// the classes of a sketch alive once the sketch is reloaded.
+	private static final ClassValue<Map<String, PropertyAccessor>> accessors = new ClassValue<Map<String, PropertyAccessor>>() {
+		@Override protected Map<String, PropertyAccessor> computeValue(Class<?> theOwner) {
+			return new HashMap<String, PropertyAccessor>();
+		}
+	};
+
+	private final Class<?> owner;
+	private final String setterName;
+	private final String getterName;
+	private Method getter;
+	private boolean isGetterResolved;
+	private Method setter;
+	private Class<?> setterType;
+
+	private PropertyAccessor(Class<?> theOwner, String theSetter, String theGetter) {
+		owner = theOwner;
+		setterName = theSetter;
+		getterName = theGetter;
+	}
+
+	/**
+	 * returns the shared accessor for a setter and getter of a controller
+	 * class.
+	 */
+	static PropertyAccessor get(Class<?> theOwner, String theSetter, String theGetter) {
+		Map<String, PropertyAccessor> byName = accessors.get(theOwner);
+		synchronized (byName) {
+			String key = theSetter + "/" + theGetter;
+			PropertyAccessor accessor = byName.get(key);
+			if (accessor == null) {
+				accessor = new PropertyAccessor(theOwner, theSetter, theGetter);
+				byName.put(key, accessor);
+			}
+			return accessor;
+		}
+	}
+
+	static PropertyAccessor get(ControllerProperty theProperty) {
+		return get(theProperty.getController().getClass(), theProperty.getSetter(), theProperty.getGetter());
+	}
+
+	/**
+	 * returns the getter method, or null if the class has no such getter.
+	 */
+	synchronized Method getGetter() {
+		if (!isGetterResolved) {
+			isGetterResolved = true;
+			try {
+				getter = owner.getMethod(getterName);
+			} catch (NoSuchMethodException e) {
+				getter = null;
+			}
+		}
+		return getter;
+	}
+
+	/**
+	 * returns the type of the property as declared by the getter.
+	 */
+	Class<?> getType() {
+		Method m = getGetter();
+		return (m == null) ? null : m.getReturnType();
+	}
+
+	Object get(Object theTarget) throws Exception {
+		Method m = getGetter();
+		if (m == null) {
+			throw new NoSuchMethodException(owner.getName() + "." + getterName + "()");
+		}
+		return m.invoke(theTarget);
+	}
+
+	/**
+	 * returns the setter taking a parameter of theType, the type declared by
+	 * the getter is tried first.
+	 */
+	synchronized Method getSetter(Class<?> theType) throws NoSuchMethodException {
+		if (setter != null && (theType == null || setterType == theType)) {
+			return setter;
+		}
+		Class<?> type = getType();
+		Method m = null;
+		if (type != null && (theType == null || matches(type, theType))) {
+			try {
+				m = owner.getMethod(setterName, type);
+			} catch (NoSuchMethodException e) {
+				m = null;
+			}
+		}
+		if (m == null) {
+			if (theType == null) {
+				throw new NoSuchMethodException(owner.getName() + "." + setterName);
+			}
+			m = owner.getMethod(setterName, theType);
+		}
+		setter = m;
+		setter.setAccessible(true);
+		setterType = theType;
+		return setter;
+	}
+
+	void set(Object theTarget, Object theValue, Class<?> theType) throws Exception {
+		getSetter(theType).invoke(theTarget, theValue);
+	}
+
+	private static boolean matches(Class<?> theDeclared, Class<?> theType) {
+		return theDeclared == theType || typeOf(theDeclared) == typeOf(theType) && typeOf(theType) != UNSUPPORTED;
+	}
+
+	/**
+	 * returns the type code of a property type, or UNSUPPORTED for types
+	 * which need java serialization.
+	 */
+	static byte typeOf(Class<?> theType) {
+		if (theType == int.class || theType == Integer.class) {
+			return INT;
+		} else if (theType == float.class || theType == Float.class) {
+			return FLOAT;
+		} else if (theType == boolean.class || theType == Boolean.class) {
+			return BOOLEAN;
+		} else if (theType == double.class || theType == Double.class) {
+			return DOUBLE;
+		} else if (theType == long.class || theType == Long.class) {
+			return LONG;
+		} else if (theType == String.class) {
+			return STRING;
+		} else if (theType == int[].class) {
+			return INT_ARRAY;
+		} else if (theType == float[].class) {
+			return FLOAT_ARRAY;
+		}
+		return UNSUPPORTED;
+	}
+
+	/**
+	 * returns the type code of a value, the runtime class is used when the
+	 * declared type is not supported (e.g. a getter returning Object).
+	 */
+	static byte typeOf(Class<?> theType, Object theValue) {
+		byte code = typeOf(theType);
+		if (code == UNSUPPORTED && theValue != null) {
+			code = typeOf(theValue.getClass());
+		}
+		return code;
+	}
+
+	static Class<?> classOf(byte theCode) {
+		switch (theCode) {
+		case INT:
+			return int.class;
+		case FLOAT:
+			return float.class;
+		case BOOLEAN:
+			return boolean.class;
+		case DOUBLE:
+			return double.class;
+		case LONG:
+			return long.class;
+		case STRING:
+			return String.class;
+		case INT_ARRAY:
+			return int[].class;
+		case FLOAT_ARRAY:
+			return float[].class;
+		}
+		return null;
+	}
+
+	private static final String[] typeNames = { null, "int", "float", "boolean", "double", "long", "String", "int[]", "float[]" };
+
+	/**
+	 * returns the name of a type code as used by the text formats.
+	 */
+	static String typeName(byte theCode) {
+		return (theCode > UNSUPPORTED && theCode < typeNames.length) ? typeNames[theCode] : null;
+	}
+
+	/**
+	 * returns the type code of a type name written by typeName(byte).
+	 */
+	static byte typeOf(String theName) {
+		for (byte i = 1; i < typeNames.length; i++) {
+			if (typeNames[i].equals(theName)) {
+				return i;
+			}
+		}
+		if ("java.lang.String".equals(theName)) {
+			return STRING;
+		}
+		return UNSUPPORTED;
+	}
+
+	/**
+	 * returns a value as text, array elements are separated by a space.
+	 */
+	static String format(byte theCode, Object theValue) {
+		if (theCode == INT_ARRAY) {
+			int[] values = (int[]) theValue;
+			StringBuilder s = new StringBuilder();
+			for (int i = 0; i < values.length; i++) {
+				s.append(i == 0 ? "" : " ").append(values[i]);
+			}
+			return s.toString();
+		} else if (theCode == FLOAT_ARRAY) {
+			float[] values = (float[]) theValue;
+			StringBuilder s = new StringBuilder();
+			for (int i = 0; i < values.length; i++) {
+				s.append(i == 0 ? "" : " ").append(values[i]);
+			}
+			return s.toString();
+		}
+		return String.valueOf(theValue);
+	}
+
+	/**
+	 * parses a value written by format(byte, Object), array elements may be
+	 * separated by spaces or commas.
+	 */
+	static Object parse(byte theCode, String theText) {
+		switch (theCode) {
+		case INT:
+			return Integer.parseInt(theText.trim());
+		case FLOAT:
+			return Float.parseFloat(theText.trim());
+		case BOOLEAN:
+			return Boolean.parseBoolean(theText.trim());
+		case DOUBLE:
+			return Double.parseDouble(theText.trim());
+		case LONG:
+			return Long.parseLong(theText.trim());
+		case STRING:
+			return theText;
+		case INT_ARRAY:
+			String[] ints = split(theText);
+			int[] intValues = new int[ints.length];
+			for (int i = 0; i < ints.length; i++) {
+				intValues[i] = Integer.parseInt(ints[i]);
+			}
+			return intValues;
+		case FLOAT_ARRAY:
+			String[] floats = split(theText);
+			float[] floatValues = new float[floats.length];
+			for (int i = 0; i < floats.length; i++) {
+				floatValues[i] = Float.parseFloat(floats[i]);
+			}
+			return floatValues;
+		}
+		throw new IllegalArgumentException("unknown value type " + theCode);
+	}
+
+	private static String[] split(String theText) {
+		theText = theText.trim();
+		return theText.isEmpty() ? new String[0] : theText.split("[\\s,]+");
+	}
+
+}
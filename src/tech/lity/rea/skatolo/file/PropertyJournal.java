@@ -0,0 +1,224 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of property changes, stored next to a properties
+ * file. Each block holds the properties which changed since the previous
+ * block in the binary properties format, preceded by its length and a
+ * checksum, a block which was not written completely is ignored on replay
+ * and overwritten by the next block. The header of a journal holds the
+ * checksum of the properties file it extends, a journal left behind by a
+ * save which replaced the properties file but could not delete the journal
+ * does not match the new file and is ignored.
+ * 
+ * @see skatolo.ControllerProperties#saveDelta(String)
+ */
+final class PropertyJournal {
+
+	static final int MAGIC = 0x534b424a;
+
+	static final int VERSION = 2;
+
+	static final String EXTENSION = "journal";
+
+	// magic number, version and checksum of the properties file.
+	private static final int HEADER = 10;
+
+	// version 1 journals have no checksum of the properties file.
+	private static final int HEADER_V1 = 6;
+
+	private final ControllerProperties.BinaryFormat format;
+
+	// number of blocks and valid length of the journals used in this session.
+	private final Map<String, long[]> journals = new HashMap<String, long[]>();
+
+	PropertyJournal(ControllerProperties.BinaryFormat theFormat) {
+		format = theFormat;
+	}
+
+	static String getPath(String thePropertiesPath) {
+		return thePropertiesPath + "." + EXTENSION;
+	}
+
+	/**
+	 * appends theProperties as one block to the journal of the properties
+	 * file thePropertiesPath and returns the number of blocks of the journal.
+	 * A journal which does not extend the current properties file is
+	 * replaced.
+	 */
+	synchronized int append(String thePropertiesPath, List<ControllerProperty> theProperties) throws IOException {
+		String path = getPath(thePropertiesPath);
+		File file = new File(path);
+		long[] journal = journals.get(path);
+		if (journal == null || file.length() != journal[1]) {
+			journal = read(path, checksum(thePropertiesPath), null);
+			journals.put(path, journal);
+		}
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		format.write(new DataOutputStream(block), theProperties);
+		CRC32 crc = new CRC32();
+		crc.update(block.toByteArray());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.size() + HEADER + 8);
+		DataOutputStream out = new DataOutputStream(bytes);
+		if (journal[1] == 0) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeInt(checksum(thePropertiesPath));
+		}
+		out.writeInt(block.size());
+		out.writeInt((int) crc.getValue());
+		block.writeTo(out);
+		out.flush();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// drops an incomplete block at the end of the journal.
+			raf.setLength(journal[1]);
+			raf.seek(journal[1]);
+			raf.write(bytes.toByteArray());
+		} finally {
+			raf.close();
+		}
+		journal[0]++;
+		journal[1] += bytes.size();
+		return (int) journal[0];
+	}
+
+	/**
+	 * applies all complete blocks of the journal of the properties file
+	 * thePropertiesPath in the order they were written to theTarget, returns
+	 * the number of blocks.
+	 */
+	synchronized int replay(String thePropertiesPath, ControllerProperties.PropertyTarget theTarget) throws IOException {
+		String path = getPath(thePropertiesPath);
+		long[] journal = read(path, checksum(thePropertiesPath), theTarget);
+		journals.put(path, journal);
+		return (int) journal[0];
+	}
+
+	/**
+	 * returns the length of the journal of the properties file
+	 * thePropertiesPath, 0 if there is no journal.
+	 */
+	synchronized long length(String thePropertiesPath) {
+		return new File(getPath(thePropertiesPath)).length();
+	}
+
+	/**
+	 * deletes the journal of the properties file thePropertiesPath once the
+	 * file was written completely. A journal which is longer than theLength,
+	 * its length when the values of the file were read, holds changes which
+	 * are not part of the file and is kept.
+	 */
+	synchronized void delete(String thePropertiesPath, long theLength) {
+		String path = getPath(thePropertiesPath);
+		File file = new File(path);
+		if (file.length() > theLength) {
+			ControllerProperties.logger.warning("keeping " + path + ", it was changed while " + thePropertiesPath + " was written.");
+			journals.remove(path);
+			return;
+		}
+		if (file.exists() && !file.delete()) {
+			ControllerProperties.logger.warning("can't delete " + path);
+		}
+		journals.put(path, new long[] { 0, 0 });
+	}
+
+	/**
+	 * returns the checksum of a properties file which identifies the file a
+	 * journal extends.
+	 */
+	static int checksum(String thePropertiesPath) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(Files.readAllBytes(new File(thePropertiesPath).toPath()));
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * reads the valid blocks of a journal and returns their number and
+	 * length, the blocks are applied to theTarget if it is not null. A journal
+	 * which does not extend the properties file with checksum theBase is
+	 * treated as empty.
+	 */
+	private long[] read(String theJournalPath, int theBase, ControllerProperties.PropertyTarget theTarget) throws IOException {
+		File file = new File(theJournalPath);
+		if (!file.exists() || file.length() < HEADER_V1) {
+			return new long[] { 0, 0 };
+		}
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (in.readInt() != MAGIC) {
+			ControllerProperties.logger.warning(theJournalPath + " is not a properties journal.");
+			return new long[] { 0, 0 };
+		}
+		int version = in.readUnsignedShort();
+		if (version > VERSION) {
+			throw new IOException(theJournalPath + " uses the unsupported version " + version + ".");
+		}
+		if (version > 1 && (bytes.length < HEADER || in.readInt() != theBase)) {
+			ControllerProperties.logger.warning("ignoring " + theJournalPath + ", it does not belong to the current properties file.");
+			return new long[] { 0, 0 };
+		}
+		long[] journal = new long[] { 0, (version > 1) ? HEADER : HEADER_V1 };
+		while (in.available() >= 8) {
+			int length = in.readInt();
+			int checksum = in.readInt();
+			if (length < 0 || length > in.available()) {
+				break;
+			}
+			CRC32 crc = new CRC32();
+			crc.update(bytes, (int) journal[1] + 8, length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			if (theTarget != null) {
+				format.read(new DataInputStream(new ByteArrayInputStream(bytes, (int) journal[1] + 8, length)), theTarget);
+			}
+			in.skipBytes(length);
+			journal[0]++;
+			journal[1] += 8 + length;
+		}
+		if (journal[1] < bytes.length) {
+			ControllerProperties.logger.warning("ignoring an incomplete block at the end of " + theJournalPath);
+		}
+		return journal;
+	}
+
+}
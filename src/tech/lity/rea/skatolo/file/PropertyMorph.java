@@ -0,0 +1,334 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.file;
+
+import tech.lity.rea.skatolo.gui.Controller;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import processing.core.PApplet;
+
+/**
+ * A property morph crossfades the properties of all controllers between two
+ * snapshots. Numeric properties are interpolated, all other properties
+ * switch from the first to the second snapshot at the midpoint. The pairs
+ * of values are collected once when the morph is created, an update only
+ * interpolates arrays and sets the values which changed.
+ * 
+ * While morphing, values are set without broadcasting, each controller
+ * which changed then broadcasts once per update, or only once at the end
+ * of the morph if broadcasting is disabled with setBroadcast(false).
+ * 
+ * @see skatolo.ControllerProperties#morph(String, String)
+ */
+public class PropertyMorph {
+
+	private final PApplet papplet;
+
+	// numeric properties whose values differ between the two snapshots.
+	private final PropertySlots.Slot[] numeric;
+	private final float[] from;
+	private final float[] to;
+	private final float[] current;
+	private final Object[] fromValue;
+	private final Object[] toValue;
+	private final int[] numericController;
+	private final boolean[] isValue;
+
+	// all other properties, switched at the midpoint.
+	private final PropertySlots.Slot[] discrete;
+	private final Object[] discreteFrom;
+	private final Object[] discreteTo;
+	private final int[] discreteController;
+
+	private final Object[] controllers;
+	private final boolean[] changed;
+	private final boolean[] isChangedSinceBroadcast;
+
+	private float amount = Float.NaN;
+	private int side = -1;
+	private boolean isBroadcast = true;
+	private boolean isRunning;
+	private long startTime;
+	private long duration;
+
+	PropertyMorph(PApplet thePApplet, PropertySlots theSlots, PropertySnapshot theFrom, PropertySnapshot theTo) {
+		papplet = thePApplet;
+		List<PropertySlots.Slot> n = new ArrayList<PropertySlots.Slot>();
+		List<PropertySlots.Slot> d = new ArrayList<PropertySlots.Slot>();
+		for (int i = 0; i < theSlots.size(); i++) {
+			PropertySlots.Slot slot = theSlots.get(i);
+			if (slot.isRemoved || !theFrom.contains(slot) || !theTo.contains(slot)) {
+				continue;
+			}
+			boolean isNumeric = PropertySnapshot.isPrimitive(slot.type) && slot.type != PropertyAccessor.BOOLEAN;
+			if (isNumeric && !theFrom.get(slot).equals(theTo.get(slot))) {
+				n.add(slot);
+			} else {
+				d.add(slot);
+			}
+		}
+
+		Map<Object, Integer> indices = new HashMap<Object, Integer>();
+		List<Object> c = new ArrayList<Object>();
+
+		numeric = n.toArray(new PropertySlots.Slot[n.size()]);
+		from = new float[numeric.length];
+		to = new float[numeric.length];
+		current = new float[numeric.length];
+		fromValue = new Object[numeric.length];
+		toValue = new Object[numeric.length];
+		numericController = new int[numeric.length];
+		isValue = new boolean[numeric.length];
+		for (int i = 0; i < numeric.length; i++) {
+			PropertySlots.Slot slot = numeric[i];
+			fromValue[i] = theFrom.get(slot);
+			toValue[i] = theTo.get(slot);
+			from[i] = ((Number) fromValue[i]).floatValue();
+			to[i] = ((Number) toValue[i]).floatValue();
+			current[i] = Float.NaN;
+			numericController[i] = indexOf(slot.property.getController(), indices, c);
+			// the value of a controller is set with changeValue, without reflection.
+			isValue[i] = slot.type == PropertyAccessor.FLOAT && "setValue".equals(slot.property.getSetter()) && slot.property.getController() instanceof Controller;
+		}
+
+		discrete = d.toArray(new PropertySlots.Slot[d.size()]);
+		discreteFrom = new Object[discrete.length];
+		discreteTo = new Object[discrete.length];
+		discreteController = new int[discrete.length];
+		for (int i = 0; i < discrete.length; i++) {
+			discreteFrom[i] = theFrom.get(discrete[i]);
+			discreteTo[i] = theTo.get(discrete[i]);
+			discreteController[i] = indexOf(discrete[i].property.getController(), indices, c);
+		}
+
+		controllers = c.toArray();
+		changed = new boolean[controllers.length];
+		isChangedSinceBroadcast = new boolean[controllers.length];
+	}
+
+	private static int indexOf(Object theController, Map<Object, Integer> theIndices, List<Object> theControllers) {
+		Integer index = theIndices.get(theController);
+		if (index == null) {
+			index = theControllers.size();
+			theControllers.add(theController);
+			theIndices.put(theController, index);
+		}
+		return index;
+	}
+
+	/**
+	 * sets the position of the morph, 0 sets the values of the first
+	 * snapshot, 1 the values of the second one. Use this to control a morph
+	 * with an external value, e.g. a slider or a midi fader.
+	 */
+	public PropertyMorph set(float theAmount) {
+		theAmount = Math.max(0, Math.min(1, theAmount));
+		if (theAmount == amount) {
+			return this;
+		}
+		amount = theAmount;
+		for (int i = 0; i < numeric.length; i++) {
+			// lerp written so that 0 and 1 give the exact values.
+			float v = from[i] * (1 - theAmount) + to[i] * theAmount;
+			if (v == current[i] || numeric[i].isRemoved) {
+				continue;
+			}
+			current[i] = v;
+			push(i, v);
+			changed[numericController[i]] = true;
+		}
+		int s = (theAmount < 0.5f) ? 0 : 1;
+		if (s != side) {
+			side = s;
+			for (int i = 0; i < discrete.length; i++) {
+				if (!discrete[i].isRemoved && change(discrete[i], (s == 0) ? discreteFrom[i] : discreteTo[i])) {
+					changed[discreteController[i]] = true;
+				}
+			}
+		}
+		for (int i = 0; i < controllers.length; i++) {
+			if (changed[i]) {
+				changed[i] = false;
+				if (isBroadcast) {
+					broadcast(controllers[i]);
+				} else {
+					isChangedSinceBroadcast[i] = true;
+				}
+			}
+		}
+		return this;
+	}
+
+	public float getAmount() {
+		return Float.isNaN(amount) ? 0 : amount;
+	}
+
+	/**
+	 * morphs from the first to the second snapshot in theDuration
+	 * milliseconds, the morph is updated before each frame is drawn.
+	 */
+	public PropertyMorph start(int theDuration) {
+		duration = Math.max(0, theDuration) * 1000000L;
+		startTime = System.nanoTime();
+		amount = Float.NaN;
+		side = -1;
+		if (!isRunning) {
+			isRunning = true;
+			papplet.registerMethod("pre", this);
+		}
+		set(0);
+		return this;
+	}
+
+	/**
+	 * stops a running morph at its current position.
+	 */
+	public PropertyMorph stop() {
+		if (isRunning) {
+			isRunning = false;
+			papplet.unregisterMethod("pre", this);
+			flush();
+		}
+		return this;
+	}
+
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	/**
+	 * with broadcasting disabled each controller which changed broadcasts
+	 * once when a running morph ends or when flush() is called.
+	 */
+	public PropertyMorph setBroadcast(boolean theFlag) {
+		isBroadcast = theFlag;
+		return this;
+	}
+
+	public boolean isBroadcast() {
+		return isBroadcast;
+	}
+
+	/**
+	 * broadcasts the controllers which changed since the last broadcast.
+	 */
+	public PropertyMorph flush() {
+		for (int i = 0; i < controllers.length; i++) {
+			if (isChangedSinceBroadcast[i]) {
+				isChangedSinceBroadcast[i] = false;
+				broadcast(controllers[i]);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * returns the number of properties which are interpolated.
+	 */
+	public int getInterpolatedCount() {
+		return numeric.length;
+	}
+
+	/**
+	 * @exclude
+	 */
+	public void pre() {
+		if (!isRunning) {
+			return;
+		}
+		long elapsed = System.nanoTime() - startTime;
+		if (duration == 0 || elapsed >= duration) {
+			set(1);
+			stop();
+		} else {
+			set((float) ((double) elapsed / duration));
+		}
+	}
+
+	private void push(int theIndex, float theValue) {
+		PropertySlots.Slot slot = numeric[theIndex];
+		if (isValue[theIndex]) {
+			((Controller<?>) slot.property.getController()).changeValue(theValue);
+			return;
+		}
+		Object value;
+		if (theValue == from[theIndex] && amount == 0) {
+			value = fromValue[theIndex];
+		} else if (theValue == to[theIndex] && amount == 1) {
+			value = toValue[theIndex];
+		} else if (slot.type == PropertyAccessor.INT) {
+			value = Math.round(theValue);
+		} else if (slot.type == PropertyAccessor.LONG) {
+			value = Math.round((double) theValue);
+		} else if (slot.type == PropertyAccessor.DOUBLE) {
+			value = (double) theValue;
+		} else {
+			value = theValue;
+		}
+		set(slot, value);
+	}
+
+	private boolean change(PropertySlots.Slot theSlot, Object theValue) {
+		try {
+			Object value = theSlot.get();
+			if (value != null && PropertySnapshot.Page.same(value, theValue)) {
+				return false;
+			}
+		} catch (Exception e) {
+			// the value is set anyway.
+		}
+		set(theSlot, theValue);
+		return true;
+	}
+
+	private void set(PropertySlots.Slot theSlot, Object theValue) {
+		Object c = theSlot.property.getController();
+		Controller<?> controller = (c instanceof Controller) ? (Controller<?>) c : null;
+		boolean broadcast = controller != null && controller.isBroadcast();
+		try {
+			if (broadcast) {
+				controller.setBroadcast(false);
+			}
+			theSlot.set(theValue);
+		} catch (Exception e) {
+			ControllerProperties.logger.severe(theSlot.property + ", " + e);
+		} finally {
+			if (broadcast) {
+				controller.setBroadcast(true);
+			}
+		}
+	}
+
+	private void broadcast(Object theController) {
+		if (theController instanceof Controller) {
+			Controller<?> controller = (Controller<?>) theController;
+			controller.setValue(controller.getValue());
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.file;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The slot table assigns a stable index to each registered property.
+ * Snapshots store their values by slot index, so a snapshot does not need to
+ * keep a copy of each ControllerProperty. A property which is removed and
+ * registered again gets its previous slot back.
+ */
+final class PropertySlots {
+
+	static final class Slot {
+
+		final int index;
+		final ControllerProperty property;
+		final PropertyAccessor accessor;
+		final byte type;
+		boolean isRemoved;
+		private Method setter;
+
+		Slot(int theIndex, ControllerProperty theProperty) {
+			index = theIndex;
+			property = theProperty;
+			accessor = PropertyAccessor.get(theProperty);
+			type = PropertyAccessor.typeOf(accessor.getType());
+		}
+
+		Object get() throws Exception {
+			return accessor.get(property.getController());
+		}
+
+		void set(Object theValue) throws Exception {
+			if (setter == null) {
+				setter = accessor.getSetter(null);
+			}
+			setter.invoke(property.getController(), theValue);
+		}
+	}
+
+	private final List<Slot> slots = new ArrayList<Slot>();
+
+	private final Map<ControllerProperty, Slot> index = new HashMap<ControllerProperty, Slot>();
+
+	Slot add(ControllerProperty theProperty) {
+		Slot slot = index.get(theProperty);
+		if (slot == null || slot.isRemoved || slot.property != theProperty) {
+			slot = new Slot(slot == null ? slots.size() : slot.index, theProperty);
+			if (slot.index == slots.size()) {
+				slots.add(slot);
+			} else {
+				slots.set(slot.index, slot);
+			}
+			index.put(theProperty, slot);
+		}
+		return slot;
+	}
+
+	void remove(ControllerProperty theProperty) {
+		Slot slot = index.get(theProperty);
+		if (slot != null) {
+			slot.isRemoved = true;
+		}
+	}
+
+	Slot get(int theIndex) {
+		return slots.get(theIndex);
+	}
+
+	Slot get(ControllerProperty theProperty) {
+		Slot slot = index.get(theProperty);
+		return (slot == null || slot.isRemoved) ? null : slot;
+	}
+
+	int size() {
+		return slots.size();
+	}
+
+}
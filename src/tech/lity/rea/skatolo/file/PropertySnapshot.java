@@ -0,0 +1,304 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.file;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A snapshot holds the values of all properties of a slot table at one point
+ * in time. Values of primitive properties are stored as bits in a long array,
+ * other values in an object array, both divided into pages of 64 slots. A
+ * snapshot is never changed once captured, so a new snapshot reuses every
+ * page of its base snapshot which did not change and similar snapshots share
+ * most of their memory.
+ */
+final class PropertySnapshot {
+
+	static final int PAGE_SIZE = 64;
+
+	static final class Page {
+
+		final long mask;
+		final long[] values;
+		final Object[] objects;
+
+		Page(long theMask, long[] theValues, Object[] theObjects) {
+			mask = theMask;
+			values = theValues;
+			objects = theObjects;
+		}
+
+		boolean equals(long theMask, long[] theValues, Object[] theObjects) {
+			if (mask != theMask || !Arrays.equals(values, theValues)) {
+				return false;
+			}
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				if (!same((objects == null) ? null : objects[i], theObjects[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		static boolean same(Object a, Object b) {
+			if (a == b) {
+				return true;
+			}
+			if (a == null || b == null) {
+				return false;
+			}
+			if (a.getClass().isArray()) {
+				return a.getClass() == b.getClass() && Arrays.deepEquals(new Object[] { a }, new Object[] { b });
+			}
+			return a.equals(b);
+		}
+	}
+
+	final Page[] pages;
+
+	PropertySnapshot(Page[] thePages) {
+		pages = thePages;
+	}
+
+	/**
+	 * captures the current values of all slots, pages equal to the pages of
+	 * theBase are shared with theBase, theBase may be null.
+	 */
+	static PropertySnapshot capture(PropertySlots theSlots, PropertySnapshot theBase) {
+		int size = theSlots.size();
+		Page[] pages = new Page[(size + PAGE_SIZE - 1) / PAGE_SIZE];
+		long[] values = new long[PAGE_SIZE];
+		Object[] objects = new Object[PAGE_SIZE];
+		for (int p = 0; p < pages.length; p++) {
+			Arrays.fill(values, 0);
+			Arrays.fill(objects, null);
+			long mask = 0;
+			boolean hasObjects = false;
+			int end = Math.min(PAGE_SIZE, size - p * PAGE_SIZE);
+			for (int i = 0; i < end; i++) {
+				PropertySlots.Slot slot = theSlots.get(p * PAGE_SIZE + i);
+				if (slot.isRemoved) {
+					continue;
+				}
+				try {
+					Object value = slot.get();
+					if (value == null) {
+						continue;
+					}
+					if (isPrimitive(slot.type)) {
+						values[i] = toBits(slot.type, value);
+					} else {
+						objects[i] = copy(value);
+						hasObjects = true;
+					}
+					mask |= 1L << i;
+				} catch (Exception e) {
+					ControllerProperties.logger.severe("" + e);
+				}
+			}
+			Page base = (theBase != null && p < theBase.pages.length) ? theBase.pages[p] : null;
+			if (base != null && base.equals(mask, values, objects)) {
+				pages[p] = base;
+			} else {
+				pages[p] = new Page(mask, values.clone(), hasObjects ? objects.clone() : null);
+			}
+		}
+		return new PropertySnapshot(pages);
+	}
+
+	/**
+	 * sets all properties of the snapshot which are still registered. Setters
+	 * usually broadcast a change, so a property which already has the value
+	 * of the snapshot is skipped.
+	 */
+	void recall(PropertySlots theSlots) {
+		int size = theSlots.size();
+		for (int p = 0; p < pages.length; p++) {
+			Page page = pages[p];
+			for (long mask = page.mask; mask != 0; mask &= mask - 1) {
+				int i = Long.numberOfTrailingZeros(mask);
+				int index = p * PAGE_SIZE + i;
+				if (index >= size) {
+					break;
+				}
+				PropertySlots.Slot slot = theSlots.get(index);
+				if (slot.isRemoved) {
+					continue;
+				}
+				try {
+					Object current = slot.get();
+					if (current != null && (isPrimitive(slot.type) ? toBits(slot.type, current) == page.values[i] : Page.same(current, page.objects[i]))) {
+						continue;
+					}
+					slot.set(get(page, i, slot.type));
+				} catch (Exception e) {
+					ControllerProperties.logger.severe(slot.property + ", " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns true if the snapshot holds a value for theSlot.
+	 */
+	boolean contains(PropertySlots.Slot theSlot) {
+		int p = theSlot.index / PAGE_SIZE;
+		return p < pages.length && (pages[p].mask & (1L << (theSlot.index % PAGE_SIZE))) != 0;
+	}
+
+	/**
+	 * returns the value stored for theSlot.
+	 */
+	Object get(PropertySlots.Slot theSlot) {
+		return contains(theSlot) ? get(pages[theSlot.index / PAGE_SIZE], theSlot.index % PAGE_SIZE, theSlot.type) : null;
+	}
+
+	/**
+	 * returns copies of the properties of the snapshot with their values set,
+	 * used to save a snapshot with one of the properties formats.
+	 */
+	List<ControllerProperty> toProperties(PropertySlots theSlots) {
+		List<PropertySlots.Slot> slots = new ArrayList<PropertySlots.Slot>(theSlots.size());
+		for (int i = 0; i < theSlots.size(); i++) {
+			slots.add(theSlots.get(i));
+		}
+		return toProperties(slots);
+	}
+
+	/**
+	 * returns copies of the properties of theSlots which are part of the
+	 * snapshot with their values set.
+	 */
+	List<ControllerProperty> toProperties(List<PropertySlots.Slot> theSlots) {
+		List<ControllerProperty> list = new ArrayList<ControllerProperty>(theSlots.size());
+		for (PropertySlots.Slot slot : theSlots) {
+			if (slot.isRemoved || !contains(slot)) {
+				continue;
+			}
+			try {
+				ControllerProperty cp = (ControllerProperty) slot.property.clone();
+				cp.setType(slot.accessor.getType());
+				cp.setValue(get(slot));
+				list.add(cp);
+			} catch (CloneNotSupportedException e) {
+				ControllerProperties.logger.severe("" + e);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * returns the slots whose value differs from theSnapshot, pages this
+	 * snapshot shares with theSnapshot are skipped without comparing values.
+	 */
+	List<PropertySlots.Slot> changes(PropertySlots theSlots, PropertySnapshot theSnapshot) {
+		List<PropertySlots.Slot> list = new ArrayList<PropertySlots.Slot>();
+		int size = theSlots.size();
+		for (int p = 0; p < pages.length; p++) {
+			Page page = pages[p];
+			Page old = (theSnapshot != null && p < theSnapshot.pages.length) ? theSnapshot.pages[p] : null;
+			if (page == old) {
+				continue;
+			}
+			for (long mask = page.mask; mask != 0; mask &= mask - 1) {
+				int i = Long.numberOfTrailingZeros(mask);
+				int index = p * PAGE_SIZE + i;
+				if (index >= size) {
+					break;
+				}
+				if (old != null && (old.mask & (1L << i)) != 0 && old.values[i] == page.values[i]
+						&& Page.same((old.objects == null) ? null : old.objects[i], (page.objects == null) ? null : page.objects[i])) {
+					continue;
+				}
+				PropertySlots.Slot slot = theSlots.get(index);
+				if (!slot.isRemoved) {
+					list.add(slot);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * returns the number of pages this snapshot shares with theSnapshot.
+	 */
+	int getSharedPages(PropertySnapshot theSnapshot) {
+		int n = 0;
+		for (int p = 0; p < Math.min(pages.length, theSnapshot.pages.length); p++) {
+			n += (pages[p] == theSnapshot.pages[p]) ? 1 : 0;
+		}
+		return n;
+	}
+
+	static boolean isPrimitive(byte theType) {
+		return theType >= PropertyAccessor.INT && theType <= PropertyAccessor.LONG;
+	}
+
+	private static long toBits(byte theType, Object theValue) {
+		switch (theType) {
+		case PropertyAccessor.INT:
+			return ((Number) theValue).intValue();
+		case PropertyAccessor.FLOAT:
+			return Float.floatToRawIntBits(((Number) theValue).floatValue());
+		case PropertyAccessor.BOOLEAN:
+			return ((Boolean) theValue) ? 1 : 0;
+		case PropertyAccessor.DOUBLE:
+			return Double.doubleToRawLongBits(((Number) theValue).doubleValue());
+		case PropertyAccessor.LONG:
+			return ((Number) theValue).longValue();
+		}
+		return 0;
+	}
+
+	private static Object get(Page thePage, int theIndex, byte theType) {
+		long bits = thePage.values[theIndex];
+		switch (theType) {
+		case PropertyAccessor.INT:
+			return (int) bits;
+		case PropertyAccessor.FLOAT:
+			return Float.intBitsToFloat((int) bits);
+		case PropertyAccessor.BOOLEAN:
+			return bits != 0;
+		case PropertyAccessor.DOUBLE:
+			return Double.longBitsToDouble(bits);
+		case PropertyAccessor.LONG:
+			return bits;
+		}
+		// arrays are copied so that a controller can not change the snapshot.
+		return copy(thePage.objects[theIndex]);
+	}
+
+	static Object copy(Object theValue) {
+		if (theValue instanceof int[]) {
+			return ((int[]) theValue).clone();
+		} else if (theValue instanceof float[]) {
+			return ((float[]) theValue).clone();
+		}
+		return theValue;
+	}
+
+}
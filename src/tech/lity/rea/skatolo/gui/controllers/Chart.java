@@ -29,6 +29,8 @@ import tech.lity.rea.skatolo.gui.Controller;
 import tech.lity.rea.skatolo.gui.group.ControllerGroup;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import processing.core.PApplet;
 import processing.core.PGraphics;
 
@@ -62,6 +64,28 @@ public class Chart extends Controller<Chart> {
 
 	protected float _myMax = 1;
 
+	protected final ConcurrentHashMap<String, ChartDataQueue> _myQueues = new ConcurrentHashMap<String, ChartDataQueue>();
+
+	protected int queueCapacity = 4096;
+
+	// pixels per unit of a value, see updateScale().
+	protected float scaleY;
+
+	protected boolean isRetained = true;
+
+	// the visible part of the data sets, from the index of the value at the left to the index of the
+	// value at the right border of the chart. Shows all values while not zoomed.
+	protected float _myViewStart = 0;
+
+	protected float _myViewEnd = 0;
+
+	protected boolean isZoomed = false;
+
+	protected boolean isZoomable = true;
+
+	// the factor a step of the mouse wheel zooms in or out.
+	protected float zoomStep = 1.25f;
+
 
 	/**
 	 * Convenience constructor to extend Chart.
@@ -130,13 +154,15 @@ public class Chart extends Controller<Chart> {
 
 
 	public Chart addData(String theSetIndex, float theValue) {
-		ChartData cdi = new ChartData(theValue);
-		getDataSet(theSetIndex).add(cdi);
-		return this;
+		return addData(getDataSet(theSetIndex), theValue);
 	}
 
 
 	public Chart addData(ChartDataSet theChartData, float theValue) {
+		if (theChartData instanceof ChartDataStream) {
+			((ChartDataStream) theChartData).push(theValue);
+			return this;
+		}
 		ChartData cdi = new ChartData(theValue);
 		theChartData.add(cdi);
 		return this;
@@ -155,7 +181,12 @@ public class Chart extends Controller<Chart> {
 
 
 	public Chart unshift(String theSetIndex, float theValue) {
-		if (getDataSet(theSetIndex).size() > (width / resolution)) {
+		ChartDataSet set = getDataSet(theSetIndex);
+		if (set instanceof ChartDataStream) {
+			((ChartDataStream) set).unshift(theValue);
+			return this;
+		}
+		if (set.size() > (width / resolution)) {
 			removeLast(theSetIndex);
 		}
 		return addFirst(theSetIndex, theValue);
@@ -168,10 +199,80 @@ public class Chart extends Controller<Chart> {
 
 
 	public Chart push(String theSetIndex, float theValue) {
-		if (getDataSet(theSetIndex).size() > (width / resolution)) {
-			removeFirst(theSetIndex);
+		return push(getDataSet(theSetIndex), theValue);
+	}
+
+
+	public Chart push(ChartDataSet theSet, float theValue) {
+		if (theSet instanceof ChartDataStream) {
+			((ChartDataStream) theSet).push(theValue);
+			return this;
+		}
+		if (theSet.size() > (width / resolution)) {
+			theSet.remove(0);
 		}
-		return addLast(theSetIndex, theValue);
+		return addData(theSet, theValue);
+	}
+
+
+	/**
+	 * queues a value which is pushed to a data set before the chart is drawn next. Other than
+	 * push(String, float), offer can be called from any thread, the data sets of a chart are only
+	 * changed by the thread drawing the chart. Returns false when the queue of the data set is full
+	 * and the value has been dropped.
+	 * 
+	 * @see skatolo.ChartDataQueue
+	 */
+	public boolean offer(String theSetIndex, float theValue) {
+		return getQueue(theSetIndex).offer(theValue);
+	}
+
+
+	/**
+	 * returns the queue of a data set used by offer(String, float). Threads adding values at a high
+	 * rate can keep a reference to the queue to skip the lookup.
+	 */
+	public ChartDataQueue getQueue(String theSetIndex) {
+		ChartDataQueue queue = _myQueues.get(theSetIndex);
+		if (queue == null) {
+			queue = new ChartDataQueue(queueCapacity);
+			ChartDataQueue previous = _myQueues.putIfAbsent(theSetIndex, queue);
+			if (previous != null) {
+				queue = previous;
+			}
+		}
+		return queue;
+	}
+
+
+	/**
+	 * sets the capacity of queues created by offer(String, float) and getQueue(String).
+	 */
+	public Chart setQueueCapacity(int theCapacity) {
+		queueCapacity = theCapacity;
+		return this;
+	}
+
+
+	/**
+	 * moves the values queued by other threads into the data sets.
+	 */
+	protected void drainQueues() {
+		for (Map.Entry<String, ChartDataQueue> entry : _myQueues.entrySet()) {
+			ChartDataSet set = getDataSet(entry.getKey());
+			if (set != null) {
+				entry.getValue().drainTo(this, set);
+			}
+		}
+	}
+
+
+	/**
+	 * @exclude
+	 */
+	@Override public void draw(PGraphics graphics) {
+		drainQueues();
+		super.draw(graphics);
 	}
 
 
@@ -181,6 +282,11 @@ public class Chart extends Controller<Chart> {
 
 
 	public Chart addFirst(String theSetIndex, float theValue) {
+		ChartDataSet set = getDataSet(theSetIndex);
+		if (set instanceof ChartDataStream) {
+			((ChartDataStream) set).unshift(theValue);
+			return this;
+		}
 		ChartData cdi = new ChartData(theValue);
 		getDataSet(theSetIndex).add(0, cdi);
 		return this;
@@ -193,9 +299,7 @@ public class Chart extends Controller<Chart> {
 
 
 	public Chart addLast(String theSetIndex, float theValue) {
-		ChartData cdi = new ChartData(theValue);
-		getDataSet(theSetIndex).add(cdi);
-		return this;
+		return addData(getDataSet(theSetIndex), theValue);
 	}
 
 
@@ -264,6 +368,25 @@ public class Chart extends Controller<Chart> {
 	}
 
 
+	/**
+	 * adds a data set which stores its values in a ring buffer, pushing values to a stream does not
+	 * allocate any memory. The capacity of a stream is given by the width and the resolution of the
+	 * chart.
+	 * 
+	 * @see skatolo.ChartDataStream
+	 */
+	public Chart addDataStream(String theName) {
+		getDataSet().put(theName, new ChartDataStream(theName, getStreamCapacity()));
+		return this;
+	}
+
+
+	private int getStreamCapacity() {
+		// push() and unshift() keep up to width / resolution + 1 values.
+		return (int) (width / resolution) + 1;
+	}
+
+
 	public Chart setDataSet(ChartDataSet theItems) {
 		setDataSet(getFirstDataSetIndex(), theItems);
 		return this;
@@ -289,6 +412,14 @@ public class Chart extends Controller<Chart> {
 
 
 	public Chart setData(String theSetIndex, float... theValues) {
+		ChartDataSet set = getDataSet(theSetIndex);
+		if (set instanceof ChartDataStream) {
+			set.clear();
+			for (float f : theValues) {
+				((ChartDataStream) set).push(f);
+			}
+			return this;
+		}
 		if (getDataSet().get(theSetIndex).size() != theValues.length) {
 			getDataSet().get(theSetIndex).clear();
 			for (int i = 0; i < theValues.length; i++) {
@@ -300,6 +431,7 @@ public class Chart extends Controller<Chart> {
 		for (float f : theValues) {
 			getDataSet().get(theSetIndex).get(n++).setValue(f);
 		}
+		getDataSet().get(theSetIndex).invalidate();
 		return this;
 	}
 
@@ -329,8 +461,19 @@ public class Chart extends Controller<Chart> {
 	}
 
 
+	/**
+	 * returns a ChartData item of a data set, changing the item changes the chart. Streams do not keep
+	 * ChartData items, use getDataSet(String) and ChartDataStream.getValue(int) and setValue(int,
+	 * float) to access the values of a stream.
+	 * 
+	 * @throws UnsupportedOperationException if the data set is a ChartDataStream
+	 */
 	public ChartData getData(String theIndex, int theItemIndex) {
-		return getDataSet(theIndex).get(theItemIndex);
+		ChartDataSet set = getDataSet(theIndex);
+		if (set instanceof ChartDataStream) {
+			throw new UnsupportedOperationException(theIndex + " is a ChartDataStream, use ChartDataStream.getValue(int) and setValue(int, float).");
+		}
+		return set.get(theItemIndex);
 	}
 
 
@@ -343,6 +486,31 @@ public class Chart extends Controller<Chart> {
 	}
 
 
+	/**
+	 * zooms in or out at the position of the pointer.
+	 */
+	@Override protected void onScroll(int theAmount) {
+		if (!isZoomable) {
+			return;
+		}
+		float x = PApplet.constrain(controlWindow.getPointerX() - (_myParent.getAbsolutePosition().x + position.x), 0, getWidth());
+		float center = getViewStart() + (getViewEnd() - getViewStart()) * x / getWidth();
+		zoom(PApplet.pow(zoomStep, theAmount), center);
+	}
+
+
+	/**
+	 * moves the viewport while the chart is zoomed.
+	 */
+	@Override protected void onDrag() {
+		if (!isZoomable || !isZoomed) {
+			return;
+		}
+		float dx = controlWindow.getPointerX() - controlWindow.getPointerPrevX();
+		pan(-dx * (getViewEnd() - getViewStart()) / getWidth());
+	}
+
+
 	@Override public void onLeave() {
 	}
 
@@ -375,6 +543,11 @@ public class Chart extends Controller<Chart> {
 	 */
 	public Chart setResolution(int theValue) {
 		resolution = theValue;
+		for (ChartDataSet c : getDataSet().values()) {
+			if (c instanceof ChartDataStream) {
+				((ChartDataStream) c).setCapacity(getStreamCapacity());
+			}
+		}
 		return this;
 	}
 
@@ -415,6 +588,254 @@ public class Chart extends Controller<Chart> {
 	}
 
 
+	/**
+	 * sets the visible part of the line and area views, theStart and theEnd are the indices of the
+	 * values shown at the left and right border of the chart and may lie between two values.
+	 */
+	public Chart setViewport(float theStart, float theEnd) {
+		float max = getViewSize();
+		_myViewStart = PApplet.constrain(PApplet.min(theStart, theEnd), 0, max);
+		_myViewEnd = PApplet.constrain(PApplet.max(theStart, theEnd), 0, max);
+		if (_myViewEnd - _myViewStart < 1) {
+			_myViewEnd = PApplet.min(max, _myViewStart + 1);
+			_myViewStart = PApplet.max(0, _myViewEnd - 1);
+		}
+		isZoomed = _myViewStart > 0 || _myViewEnd < max;
+		return this;
+	}
+
+
+	/**
+	 * shows all values again.
+	 */
+	public Chart resetViewport() {
+		isZoomed = false;
+		return this;
+	}
+
+
+	/**
+	 * scales the viewport by theFactor around the value at theCenter, a factor smaller than 1 zooms
+	 * in.
+	 */
+	public Chart zoom(float theFactor, float theCenter) {
+		float start = getViewStart();
+		float end = getViewEnd();
+		float s = theCenter - (theCenter - start) * theFactor;
+		float e = theCenter + (end - theCenter) * theFactor;
+		// keep the size of the viewport when it hits a border.
+		if (s < 0) {
+			e -= s;
+			s = 0;
+		}
+		if (e > getViewSize()) {
+			s -= e - getViewSize();
+			e = getViewSize();
+		}
+		return setViewport(s, e);
+	}
+
+
+	/**
+	 * moves the viewport by theAmount values.
+	 */
+	public Chart pan(float theAmount) {
+		float amount = PApplet.constrain(theAmount, -getViewStart(), getViewSize() - getViewEnd());
+		return setViewport(getViewStart() + amount, getViewEnd() + amount);
+	}
+
+
+	public float getViewStart() {
+		return isZoomed ? PApplet.min(_myViewStart, getViewSize()) : 0;
+	}
+
+
+	public float getViewEnd() {
+		return isZoomed ? PApplet.min(_myViewEnd, getViewSize()) : getViewSize();
+	}
+
+
+	public boolean isZoomed() {
+		return isZoomed;
+	}
+
+
+	/**
+	 * enables or disables zooming with the mouse wheel and panning by dragging.
+	 */
+	public Chart setZoomable(boolean theFlag) {
+		isZoomable = theFlag;
+		return this;
+	}
+
+
+	public boolean isZoomable() {
+		return isZoomable;
+	}
+
+
+	/**
+	 * returns the index of the last value of the largest data set.
+	 */
+	private int getViewSize() {
+		int n = 1;
+		for (ChartDataSet set : getDataSet().values()) {
+			n = Math.max(n, set.size());
+		}
+		return n - 1;
+	}
+
+
+	/**
+	 * adds the vertices of a data set to the current shape. A data set holding more than twice as
+	 * many values as the chart is wide is reduced to its min/max envelope with one bucket per pixel.
+	 */
+	protected void addVertices(PGraphics graphics, ChartDataSet theSet) {
+		if (isZoomed) {
+			addViewportVertices(graphics, theSet, getViewStart(), getViewEnd());
+			return;
+		}
+		int n = theSet.size();
+		float res = ((float) getWidth()) / (n - 1);
+		if (n <= getWidth() * 2) {
+			for (int i = 0; i < n; i++) {
+				vertex(graphics, i * res, theSet.getValue(i));
+			}
+			return;
+		}
+		ChartEnvelope envelope = theSet.getEnvelope(getWidth());
+		for (int b = 0; b < envelope.size(); b++) {
+			int i0 = envelope.getMinIndex(b);
+			int i1 = envelope.getMaxIndex(b);
+			if (i0 <= i1) {
+				vertex(graphics, i0 * res, envelope.getMin(b));
+				if (i1 != i0) {
+					vertex(graphics, i1 * res, envelope.getMax(b));
+				}
+			} else {
+				vertex(graphics, i1 * res, envelope.getMax(b));
+				vertex(graphics, i0 * res, envelope.getMin(b));
+			}
+		}
+	}
+
+
+	/**
+	 * adds the vertices of the values between theStart and theEnd. When more than two values fall on
+	 * one pixel the vertices are taken from the level of the data set's pyramid with one or two
+	 * buckets per pixel, so drawing takes about the same time at any zoom level.
+	 */
+	protected void addViewportVertices(PGraphics graphics, ChartDataSet theSet, float theStart, float theEnd) {
+		int last = theSet.size() - 1;
+		if (last < 1 || theStart >= last) {
+			return;
+		}
+		float end = PApplet.min(theEnd, last);
+		float res = getWidth() / (theEnd - theStart);
+		int i0 = (int) theStart;
+		int i1 = PApplet.ceil(end);
+		vertex(graphics, 0, valueAt(theSet, theStart));
+		int level = 0;
+		while ((2 << level) * getWidth() < (theEnd - theStart)) {
+			level++;
+		}
+		if (level == 0) {
+			for (int i = i0 + 1; i < i1; i++) {
+				vertex(graphics, (i - theStart) * res, theSet.getValue(i));
+			}
+		} else {
+			ChartEnvelope envelope = theSet.getLevel(level);
+			int b1 = PApplet.min(envelope.indexOf(i1), envelope.size() - 1);
+			for (int b = PApplet.max(0, envelope.indexOf(i0)); b <= b1; b++) {
+				int m0 = envelope.getMinIndex(b);
+				int m1 = envelope.getMaxIndex(b);
+				float x0 = PApplet.constrain((m0 - theStart) * res, 0, getWidth());
+				float x1 = PApplet.constrain((m1 - theStart) * res, 0, getWidth());
+				if (m0 <= m1) {
+					vertex(graphics, x0, envelope.getMin(b));
+					vertex(graphics, x1, envelope.getMax(b));
+				} else {
+					vertex(graphics, x1, envelope.getMax(b));
+					vertex(graphics, x0, envelope.getMin(b));
+				}
+			}
+		}
+		vertex(graphics, (end - theStart) * res, valueAt(theSet, end));
+	}
+
+
+	/**
+	 * returns the value at a position between two values by interpolating linearly.
+	 */
+	private float valueAt(ChartDataSet theSet, float theIndex) {
+		int i = (int) theIndex;
+		if (i >= theSet.size() - 1) {
+			return theSet.getValue(theSet.size() - 1);
+		}
+		return PApplet.lerp(theSet.getValue(i), theSet.getValue(i + 1), theIndex - i);
+	}
+
+
+	private void vertex(PGraphics graphics, float theX, float theValue) {
+		graphics.vertex(theX, valueToY(theValue));
+	}
+
+
+	/**
+	 * returns the y position of a value, clamped to the height of the chart.
+	 */
+	protected float valueToY(float theValue) {
+		float hh = getHeight() - (theValue - _myMin) * scaleY;
+		return PApplet.min(getHeight(), PApplet.max(0, hh));
+	}
+
+
+	/**
+	 * with retained mode enabled (the default), line, area and bar views keep the geometry of each
+	 * data set in a PShape which is only updated for changed values. Retained mode is used with the
+	 * OpenGL renderers only, data sets reduced to their envelope and bars with more than one color
+	 * are always drawn immediately.
+	 * 
+	 * @see skatolo.ChartShape
+	 */
+	public Chart setRetained(boolean theFlag) {
+		isRetained = theFlag;
+		if (!theFlag) {
+			for (ChartDataSet set : getDataSet().values()) {
+				set._myShape = null;
+			}
+		}
+		return this;
+	}
+
+
+	public boolean isRetained() {
+		return isRetained;
+	}
+
+
+	private boolean isRetained(PGraphics graphics, ChartDataSet theSet) {
+		return isRetained && !isZoomed && graphics.isGL() && theSet.size() <= getWidth() * 2;
+	}
+
+
+	/**
+	 * calculates the factor to scale values from the range of the chart to pixels, called once per
+	 * frame before the data sets are drawn.
+	 */
+	protected void updateScale() {
+		scaleY = getHeight() / (_myMax - _myMin);
+	}
+
+
+	/**
+	 * returns the height in pixels of a bar for a value, clamped to the height of the chart.
+	 */
+	protected float barHeight(float theValue) {
+		return PApplet.min(getHeight(), PApplet.max(0, (theValue - _myMin) * scaleY));
+	}
+
+
 	public class ChartViewBar implements ControllerView<Chart> {
 
 		public void display(PGraphics graphics, Chart theController) {
@@ -422,20 +843,25 @@ public class Chart extends Controller<Chart> {
 			graphics.fill(getColor().getBackground());
 			graphics.rect(0, 0, getWidth(), getHeight());
 			graphics.noStroke();
+			updateScale();
 
-			Iterator<String> it = getDataSet().keySet().iterator();
-			String index = null;
+			int numSets = getDataSet().size();
 			float o = 0;
-			while (it.hasNext()) {
-				index = it.next();
-				float s = getDataSet(index).size();
+			for (ChartDataSet set : getDataSet().values()) {
+				int s = set.size();
+				float ww = width / (float) s;
+				float w = ww / numSets;
+				if (isRetained(graphics, set) && set.getColors().length <= 1) {
+					set.getShape(ChartShape.BAR).draw(graphics, Chart.this, set, ww, o, w);
+					o += w;
+					continue;
+				}
+				int[] colors = set.getColorTable();
 				for (int i = 0; i < s; i++) {
-					graphics.fill(getDataSet(index).getColor(i));
-					float ww = ((width / s));
-					float hh = PApplet.map(getDataSet(index).get(i).getValue(), _myMin, _myMax, 0, getHeight());
-					graphics.rect(o + i * ww, getHeight(), (ww / getDataSet().size()), -PApplet.min(getHeight(), PApplet.max(0, hh)));
+					graphics.fill(colors[i]);
+					graphics.rect(o + i * ww, getHeight(), w, -barHeight(set.getValue(i)));
 				}
-				o += ((width / s)) / getDataSet().size();
+				o += w;
 			}
 			graphics.popStyle();
 		}
@@ -448,25 +874,19 @@ public class Chart extends Controller<Chart> {
 			graphics.fill(getColor().getBackground());
 			graphics.rect(0, 0, getWidth(), getHeight());
 			graphics.noStroke();
+			updateScale();
 
-			Iterator<String> it = getDataSet().keySet().iterator();
-			String index = null;
 			float o = 0;
 			int n = 4;
 			int off = (getDataSet().size() - 1) * n;
-			while (it.hasNext()) {
-				index = it.next();
-				int s = getDataSet(index).size();
-				float step = (float) width / (float) (s);
-				float ww = step - (width % step);
-				ww -= 1;
-				ww = PApplet.max(1, ww);
-
+			for (ChartDataSet set : getDataSet().values()) {
+				int s = set.size();
+				int[] colors = set.getColorTable();
+				int step = s > 0 ? width / s : 0;
+				float ww = step * 0.5f;
 				for (int i = 0; i < s; i++) {
-					graphics.fill(getDataSet(index).getColor(i));
-					ww = ((width / s) * 0.5f);
-					float hh = PApplet.map(getDataSet(index).get(i).getValue(), _myMin, _myMax, 0, getHeight());
-					graphics.rect(-off / 2 + o + i * ((width / s)) + ww / 2, getHeight(), ww, -PApplet.min(getHeight(), PApplet.max(0, hh)));
+					graphics.fill(colors[i]);
+					graphics.rect(-off / 2 + o + i * step + ww / 2, getHeight(), ww, -barHeight(set.getValue(i)));
 				}
 				o += n;
 			}
@@ -482,19 +902,17 @@ public class Chart extends Controller<Chart> {
 			graphics.fill(getColor().getBackground());
 			graphics.rect(0, 0, getWidth(), getHeight());
 			graphics.noFill();
-			Iterator<String> it = getDataSet().keySet().iterator();
-			String index = null;
-			while (it.hasNext()) {
-				index = it.next();
-				graphics.stroke(getDataSet(index).getColor(0));
-				graphics.strokeWeight(getDataSet(index).getStrokeWeight());
+			updateScale();
+			for (ChartDataSet set : getDataSet().values()) {
+				if (isRetained(graphics, set)) {
+					set.getShape(ChartShape.LINE).draw(graphics, Chart.this, set, getWidth() / (set.size() - 1f), 0, 0);
+					continue;
+				}
+				graphics.stroke(set.getColor(0));
+				graphics.strokeWeight(set.getStrokeWeight());
 
 				graphics.beginShape();
-				float res = ((float) getWidth()) / (getDataSet(index).size() - 1);
-				for (int i = 0; i < getDataSet(index).size(); i++) {
-					float hh = PApplet.map(getDataSet(index).get(i).getValue(), _myMin, _myMax, getHeight(), 0);
-					graphics.vertex(i * res, PApplet.min(getHeight(), PApplet.max(0, hh)));
-				}
+				addVertices(graphics, set);
 				graphics.endShape();
 			}
 			graphics.noStroke();
@@ -510,21 +928,16 @@ public class Chart extends Controller<Chart> {
 			graphics.fill(getColor().getBackground());
 			graphics.rect(0, 0, getWidth(), getHeight());
 			graphics.noStroke();
-
-			Iterator<String> it = getDataSet().keySet().iterator();
-			String index = null;
-			while (it.hasNext()) {
-				index = it.next();
-				float res = ((float) getWidth()) / (getDataSet(index).size() - 1);
-
-				graphics.fill(getDataSet(index).getColor(0));
+			updateScale();
+			for (ChartDataSet set : getDataSet().values()) {
+				if (isRetained(graphics, set)) {
+					set.getShape(ChartShape.AREA).draw(graphics, Chart.this, set, getWidth() / (set.size() - 1f), 0, 0);
+					continue;
+				}
+				graphics.fill(set.getColor(0));
 				graphics.beginShape();
 				graphics.vertex(0, getHeight());
-
-				for (int i = 0; i < getDataSet(index).size(); i++) {
-					float hh = PApplet.map(getDataSet(index).get(i).getValue(), _myMin, _myMax, getHeight(), 0);
-					graphics.vertex(i * res, PApplet.min(getHeight(), PApplet.max(0, hh)));
-				}
+				addVertices(graphics, set);
 				graphics.vertex(getWidth(), getHeight());
 				graphics.endShape(PApplet.CLOSE);
 			}
@@ -539,26 +952,18 @@ public class Chart extends Controller<Chart> {
 			graphics.pushStyle();
 			graphics.pushMatrix();
 
-			Iterator<String> it = getDataSet().keySet().iterator();
-			String index = null;
-			while (it.hasNext()) {
-				index = it.next();
-				float total = 0;
-				for (int i = 0; i < getDataSet(index).size(); i++) {
-					total += getDataSet(index).get(i).getValue();
-				}
+			// a tiny offset to even out render artifacts when in smooth() mode.
+			float a = PApplet.max(0, PApplet.map(getWidth(), 0, 200, 0.05f, 0.01f));
 
-				float segment = TWO_PI / total;
+			for (ChartDataSet set : getDataSet().values()) {
+				int[] colors = set.getColorTable();
+				float segment = TWO_PI / set.getSum();
 				float angle = -HALF_PI;
 
 				graphics.noStroke();
-				for (int i = 0; i < getDataSet(index).size(); i++) {
-					graphics.fill(getDataSet(index).getColor(i));
-					float nextAngle = angle + getDataSet(index).get(i).getValue() * segment;
-
-					// a tiny offset to even out render artifacts when in smooth() mode.
-					float a = PApplet.max(0, PApplet.map(getWidth(), 0, 200, 0.05f, 0.01f));
-
+				for (int i = 0; i < set.size(); i++) {
+					graphics.fill(colors[i]);
+					float nextAngle = angle + set.getValue(i) * segment;
 					graphics.arc(0, 0, getWidth(), getHeight(), angle - a, nextAngle);
 					angle = nextAngle;
 				}
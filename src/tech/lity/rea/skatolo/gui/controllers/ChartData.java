@@ -25,7 +25,9 @@
 package tech.lity.rea.skatolo.gui.controllers;
 
 /**
- * Used by Chart, single chart data is stored here including value, (label) text, and color.
+ * Used by Chart, single chart data is stored here including value, (label) text, and color. A
+ * ChartData item belongs to the data set it was last added to, changing its value or color
+ * invalidates the cached results of that set.
  */
 public class ChartData {
 
@@ -35,6 +37,8 @@ public class ChartData {
 
 	protected int _myColor;
 
+	protected ChartDataSet _mySet;
+
 
 	public ChartData(float theValue) {
 		this(theValue, "");
@@ -49,6 +53,9 @@ public class ChartData {
 
 	public void setValue(float theValue) {
 		_myValue = theValue;
+		if (_mySet != null) {
+			_mySet.invalidate();
+		}
 	}
 
 
@@ -69,6 +76,9 @@ public class ChartData {
 
 	public void setColor(int theColor) {
 		_myColor = theColor;
+		if (_mySet != null) {
+			_mySet.invalidate();
+		}
 	}
 
 
@@ -0,0 +1,127 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.controllers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Used by Chart, a ChartDataQueue is a bounded lock-free queue of float values which can be
+ * filled from any number of threads and is emptied by the thread drawing the chart. Values are
+ * offered with Chart.offer(String, float) or directly through the queue returned by
+ * Chart.getQueue(String), the chart moves queued values into its data sets right before it is
+ * drawn. When the queue is full, new values are dropped.
+ */
+public class ChartDataQueue {
+
+	private final float[] values;
+
+	// a slot may be written by a producer when its sequence equals the producer's position and read
+	// by the consumer when it equals the consumer's position + 1.
+	private final AtomicLongArray sequence;
+
+	private final int mask;
+
+	private final AtomicLong tail = new AtomicLong();
+
+	private final AtomicInteger dropped = new AtomicInteger();
+
+	private long head;
+
+
+	public ChartDataQueue(int theCapacity) {
+		int n = 2;
+		while (n < theCapacity) {
+			n <<= 1;
+		}
+		values = new float[n];
+		sequence = new AtomicLongArray(n);
+		for (int i = 0; i < n; i++) {
+			sequence.set(i, i);
+		}
+		mask = n - 1;
+	}
+
+
+	public int getCapacity() {
+		return values.length;
+	}
+
+
+	/**
+	 * adds a value to the queue, returns false when the queue is full and the value has been
+	 * dropped. Can be called from any thread.
+	 */
+	public boolean offer(float theValue) {
+		long t;
+		int i;
+		while (true) {
+			t = tail.get();
+			i = (int) (t & mask);
+			long diff = sequence.get(i) - t;
+			if (diff == 0) {
+				if (tail.compareAndSet(t, t + 1)) {
+					break;
+				}
+			} else if (diff < 0) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		}
+		values[i] = theValue;
+		sequence.lazySet(i, t + 1);
+		return true;
+	}
+
+
+	/**
+	 * moves all queued values into a data set, must only be called by a single thread at a time.
+	 * Returns the number of values added.
+	 */
+	public int drainTo(Chart theChart, ChartDataSet theSet) {
+		int n = 0;
+		while (true) {
+			int i = (int) (head & mask);
+			if (sequence.get(i) != head + 1) {
+				return n;
+			}
+			float v = values[i];
+			sequence.lazySet(i, head + values.length);
+			head++;
+			theChart.push(theSet, v);
+			n++;
+		}
+	}
+
+
+	/**
+	 * returns the number of values which have been dropped because the queue was full.
+	 */
+	public int getDropped() {
+		return dropped.get();
+	}
+
+}
@@ -25,14 +25,23 @@
 package tech.lity.rea.skatolo.gui.controllers;
 
 import tech.lity.rea.skatolo.gui.CColor;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 import processing.core.PApplet;
 import processing.core.PGraphics;
 
 /**
- * Used by Chart, a chart data set is a container to store chart data.
+ * Used by Chart, a chart data set is a container to store chart data. All methods of List which
+ * change the set, including those of its iterators and sub lists, update the cached sum, envelopes
+ * and shape of the set.
  */
 @SuppressWarnings("serial") public class ChartDataSet extends ArrayList<ChartData> {
 
@@ -44,6 +53,35 @@ import processing.core.PGraphics;
 
 	protected final String _myName;
 
+	// counts changes which can not be applied incrementally to a ChartEnvelope, appending values at
+	// the end and removing values from the beginning are not counted.
+	protected int _myVersion;
+
+	// the absolute index of the first value, increases when values are removed from the beginning.
+	protected long _myFirst;
+
+	protected ChartEnvelope _myEnvelope;
+
+	// envelopes with a span of 2^level, see getLevel(int).
+	protected ChartEnvelope[] _myLevels = new ChartEnvelope[0];
+
+	// sum of all values, updated with each change, recalculated after invalidate().
+	protected double _mySum;
+
+	protected boolean isSumValid = true;
+
+	// the color of each value, see getColorTable().
+	protected int[] _myColorTable = new int[0];
+
+	protected int[] _myColorTableColors;
+
+	protected int _myColorTableForeground;
+
+	protected ChartShape _myShape;
+
+	// the List view used by subList(int, int), see list().
+	private transient List<ChartData> _myList;
+
 
 	public ChartDataSet(String theName) {
 		_myName = theName;
@@ -67,6 +105,26 @@ import processing.core.PGraphics;
 	}
 
 
+	/**
+	 * returns the colors of all values of the data set, the table is only recalculated when the
+	 * colors or the size of the data set change.
+	 */
+	public int[] getColorTable() {
+		int n = size();
+		if (_myColorTable.length != n || _myColorTableColors != colors || _myColorTableForeground != getColor().getForeground()) {
+			if (_myColorTable.length != n) {
+				_myColorTable = new int[n];
+			}
+			_myColorTableColors = colors;
+			_myColorTableForeground = getColor().getForeground();
+			for (int i = 0; i < n; i++) {
+				_myColorTable[i] = getColor(i);
+			}
+		}
+		return _myColorTable;
+	}
+
+
 	public int getColor(int theIndex) {
 		if (colors.length == 0) {
 			return getColor().getForeground();
@@ -92,6 +150,288 @@ import processing.core.PGraphics;
 	}
 
 
+	public float getValue(int theIndex) {
+		return get(theIndex).getValue();
+	}
+
+
+	/**
+	 * invalidates cached results like the sum and the envelope of the set, called when the value or
+	 * color of a ChartData item of this set changes.
+	 */
+	public ChartDataSet invalidate() {
+		_myVersion++;
+		isSumValid = false;
+		return this;
+	}
+
+
+	/**
+	 * returns the sum of all values.
+	 */
+	public float getSum() {
+		if (!isSumValid) {
+			_mySum = 0;
+			for (int i = 0; i < size(); i++) {
+				_mySum += getValue(i);
+			}
+			isSumValid = true;
+		}
+		return (float) _mySum;
+	}
+
+
+	public int getVersion() {
+		return _myVersion;
+	}
+
+
+	/**
+	 * returns the absolute index of the first value of the set, the index increases by one each time
+	 * the first value is removed.
+	 */
+	public long getFirstIndex() {
+		return _myFirst;
+	}
+
+
+	/**
+	 * returns the min/max envelope of the set with a resolution of about theColumns buckets, the
+	 * envelope is updated incrementally while values are appended to the end of the set.
+	 * 
+	 * @see skatolo.ChartEnvelope
+	 */
+	public ChartEnvelope getEnvelope(int theColumns) {
+		int span = ChartEnvelope.getSpan(getEnvelopeSize(), theColumns);
+		if (_myEnvelope == null || _myEnvelope.getSpan() != span) {
+			_myEnvelope = new ChartEnvelope(span, theColumns + 2);
+		}
+		return _myEnvelope.update(this);
+	}
+
+
+	/**
+	 * returns the retained geometry of the set used by Chart views of the given type.
+	 * 
+	 * @see skatolo.ChartShape
+	 */
+	public ChartShape getShape(int theType) {
+		if (_myShape == null || _myShape.type != theType) {
+			_myShape = new ChartShape(theType);
+		}
+		return _myShape;
+	}
+
+
+	/**
+	 * returns a level of the min/max/mean pyramid of the set, the envelope of a level reduces 2^level
+	 * values to one bucket. Levels are created when they are first requested and are updated like
+	 * getEnvelope(int), so a Chart can draw any part of a set with about one bucket per pixel by
+	 * choosing the matching level.
+	 */
+	public ChartEnvelope getLevel(int theLevel) {
+		if (theLevel >= _myLevels.length) {
+			_myLevels = Arrays.copyOf(_myLevels, theLevel + 1);
+		}
+		int span = 1 << theLevel;
+		int needed = getEnvelopeSize() / span + 2;
+		if (_myLevels[theLevel] == null || _myLevels[theLevel].getCapacity() < needed) {
+			// grow by half for sets which are still growing.
+			_myLevels[theLevel] = new ChartEnvelope(span, (this instanceof ChartDataStream) ? needed : needed + needed / 2);
+		}
+		return _myLevels[theLevel].update(this);
+	}
+
+
+	protected int getEnvelopeSize() {
+		return size();
+	}
+
+
+	@Override public boolean add(ChartData theItem) {
+		_mySum += theItem.getValue();
+		theItem._mySet = this;
+		return super.add(theItem);
+	}
+
+
+	@Override public void add(int theIndex, ChartData theItem) {
+		if (theIndex != size()) {
+			_myVersion++;
+		}
+		_mySum += theItem.getValue();
+		theItem._mySet = this;
+		super.add(theIndex, theItem);
+	}
+
+
+	@Override public boolean addAll(Collection<? extends ChartData> theItems) {
+		isSumValid = false;
+		for (ChartData item : theItems) {
+			item._mySet = this;
+		}
+		return super.addAll(theItems);
+	}
+
+
+	@Override public boolean addAll(int theIndex, Collection<? extends ChartData> theItems) {
+		if (theIndex != size()) {
+			_myVersion++;
+		}
+		isSumValid = false;
+		for (ChartData item : theItems) {
+			item._mySet = this;
+		}
+		return super.addAll(theIndex, theItems);
+	}
+
+
+	@Override public ChartData remove(int theIndex) {
+		if (theIndex == 0) {
+			_myFirst++;
+		} else {
+			_myVersion++;
+		}
+		ChartData removed = super.remove(theIndex);
+		_mySum -= removed.getValue();
+		return removed;
+	}
+
+
+	@Override public boolean remove(Object theItem) {
+		_myVersion++;
+		isSumValid = false;
+		return super.remove(theItem);
+	}
+
+
+	@Override public ChartData set(int theIndex, ChartData theItem) {
+		_myVersion++;
+		ChartData previous = super.set(theIndex, theItem);
+		_mySum += theItem.getValue() - previous.getValue();
+		theItem._mySet = this;
+		return previous;
+	}
+
+
+	@Override public void clear() {
+		_myVersion++;
+		_mySum = 0;
+		isSumValid = true;
+		super.clear();
+	}
+
+
+	@Override protected void removeRange(int theFrom, int theTo) {
+		if (theFrom == 0) {
+			_myFirst += Math.max(0, theTo);
+		} else {
+			_myVersion++;
+		}
+		isSumValid = false;
+		super.removeRange(theFrom, theTo);
+	}
+
+
+	@Override public boolean removeAll(Collection<?> theItems) {
+		return changed(super.removeAll(theItems));
+	}
+
+
+	@Override public boolean retainAll(Collection<?> theItems) {
+		return changed(super.retainAll(theItems));
+	}
+
+
+	@Override public boolean removeIf(Predicate<? super ChartData> theFilter) {
+		return changed(super.removeIf(theFilter));
+	}
+
+
+	@Override public void replaceAll(UnaryOperator<ChartData> theOperator) {
+		super.replaceAll(theOperator);
+		for (int i = 0; i < size(); i++) {
+			get(i)._mySet = this;
+		}
+		invalidate();
+	}
+
+
+	@Override public void sort(Comparator<? super ChartData> theComparator) {
+		super.sort(theComparator);
+		invalidate();
+	}
+
+
+	/**
+	 * the sub list is a view of the set which changes the set through the methods above.
+	 */
+	@Override public List<ChartData> subList(int theFrom, int theTo) {
+		return list().subList(theFrom, theTo);
+	}
+
+
+	@Override public Object clone() {
+		ChartDataSet set = (ChartDataSet) super.clone();
+		set._myList = null;
+		set._myEnvelope = null;
+		set._myLevels = new ChartEnvelope[0];
+		set._myColorTable = new int[0];
+		set._myShape = null;
+		return set;
+	}
+
+
+	private boolean changed(boolean isChanged) {
+		if (isChanged) {
+			invalidate();
+		}
+		return isChanged;
+	}
+
+
+	/**
+	 * returns a List view of the set which implements the methods of List through get, set, add,
+	 * remove and removeRange of the set.
+	 */
+	protected List<ChartData> list() {
+		if (_myList == null) {
+			_myList = new AbstractList<ChartData>() {
+
+				@Override public ChartData get(int theIndex) {
+					return ChartDataSet.this.get(theIndex);
+				}
+
+
+				@Override public int size() {
+					return ChartDataSet.this.size();
+				}
+
+
+				@Override public ChartData set(int theIndex, ChartData theItem) {
+					return ChartDataSet.this.set(theIndex, theItem);
+				}
+
+
+				@Override public void add(int theIndex, ChartData theItem) {
+					ChartDataSet.this.add(theIndex, theItem);
+				}
+
+
+				@Override public ChartData remove(int theIndex) {
+					return ChartDataSet.this.remove(theIndex);
+				}
+
+
+				@Override protected void removeRange(int theFrom, int theTo) {
+					ChartDataSet.this.removeRange(theFrom, theTo);
+				}
+			};
+		}
+		return _myList;
+	}
+
+
 	public float[] getValues() {
 		float[] v = new float[size()];
 		int n = 0;
@@ -0,0 +1,430 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.controllers;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Used by Chart, a ChartDataStream is a data set of fixed capacity which stores its values inside a
+ * float ring buffer. Adding a value at the end (push) or at the beginning (unshift) of a full
+ * stream overwrites the value at the opposite end without shifting or allocating anything. Use
+ * Chart.addDataStream(String) to add a stream to a chart, the capacity then follows the width and
+ * resolution of the chart.
+ * 
+ * ChartData items returned by get(int) are copies, changing them does NOT change the stream and
+ * Chart.getData(String, int) does not accept streams. Use getValue(int) and setValue(int, float)
+ * to access the values of a stream. Items are therefore compared by value, contains, indexOf and
+ * remove(Object) find any item with the same value. All methods of List work on the ring buffer,
+ * an item added in the middle of a full stream drops the last value.
+ */
+@SuppressWarnings("serial") public class ChartDataStream extends ChartDataSet {
+
+	protected float[] values;
+
+	protected int head;
+
+	protected int count;
+
+
+	public ChartDataStream(String theName, int theCapacity) {
+		super(theName);
+		values = new float[Math.max(1, theCapacity)];
+	}
+
+
+	public int getCapacity() {
+		return values.length;
+	}
+
+
+	/**
+	 * changes the capacity of the stream, the most recent values are kept.
+	 */
+	public ChartDataStream setCapacity(int theCapacity) {
+		theCapacity = Math.max(1, theCapacity);
+		if (theCapacity == values.length) {
+			return this;
+		}
+		float[] v = new float[theCapacity];
+		int n = Math.min(count, theCapacity);
+		for (int i = 0; i < n; i++) {
+			v[i] = getValue(count - n + i);
+		}
+		values = v;
+		head = 0;
+		count = n;
+		_myVersion++;
+		isSumValid = false;
+		return this;
+	}
+
+
+	/**
+	 * adds a value at the end of the stream, the first value is dropped when the stream is full.
+	 */
+	public ChartDataStream push(float theValue) {
+		if (count == values.length) {
+			_mySum -= values[head];
+			values[head] = theValue;
+			head = (head + 1) % values.length;
+			_myFirst++;
+		} else {
+			values[(head + count++) % values.length] = theValue;
+		}
+		_mySum += theValue;
+		return this;
+	}
+
+
+	/**
+	 * adds a value at the beginning of the stream, the last value is dropped when the stream is
+	 * full.
+	 */
+	public ChartDataStream unshift(float theValue) {
+		head = (head + values.length - 1) % values.length;
+		if (count < values.length) {
+			count++;
+		} else {
+			_mySum -= values[head];
+		}
+		values[head] = theValue;
+		_mySum += theValue;
+		_myVersion++;
+		return this;
+	}
+
+
+	@Override public float getValue(int theIndex) {
+		checkIndex(theIndex);
+		return values[(head + theIndex) % values.length];
+	}
+
+
+	public ChartDataStream setValue(int theIndex, float theValue) {
+		checkIndex(theIndex);
+		int i = (head + theIndex) % values.length;
+		_mySum += theValue - values[i];
+		values[i] = theValue;
+		_myVersion++;
+		return this;
+	}
+
+
+	@Override public float[] getValues() {
+		float[] v = new float[count];
+		for (int i = 0; i < count; i++) {
+			v[i] = values[(head + i) % values.length];
+		}
+		return v;
+	}
+
+
+	@Override public int size() {
+		return count;
+	}
+
+
+	@Override public boolean isEmpty() {
+		return count == 0;
+	}
+
+
+	/**
+	 * returns a copy of the value at theIndex. The stream does not keep ChartData items, changing
+	 * the value of the returned item does NOT change the stream, use setValue(int, float) instead.
+	 */
+	@Override public ChartData get(int theIndex) {
+		return new ChartData(getValue(theIndex));
+	}
+
+
+	@Override public ChartData set(int theIndex, ChartData theItem) {
+		ChartData previous = get(theIndex);
+		setValue(theIndex, theItem.getValue());
+		return previous;
+	}
+
+
+	@Override public boolean add(ChartData theItem) {
+		push(theItem.getValue());
+		return true;
+	}
+
+
+	@Override public void add(int theIndex, ChartData theItem) {
+		if (theIndex == 0) {
+			unshift(theItem.getValue());
+		} else if (theIndex == count) {
+			push(theItem.getValue());
+		} else {
+			checkIndex(theIndex);
+			if (count == values.length) {
+				_mySum -= getValue(count - 1);
+				count--;
+			}
+			for (int i = count; i > theIndex; i--) {
+				values[(head + i) % values.length] = values[(head + i - 1) % values.length];
+			}
+			values[(head + theIndex) % values.length] = theItem.getValue();
+			count++;
+			_mySum += theItem.getValue();
+			_myVersion++;
+		}
+	}
+
+
+	@Override public boolean addAll(Collection<? extends ChartData> theItems) {
+		for (ChartData item : theItems) {
+			push(item.getValue());
+		}
+		return !theItems.isEmpty();
+	}
+
+
+	@Override public boolean addAll(int theIndex, Collection<? extends ChartData> theItems) {
+		return list().addAll(theIndex, theItems);
+	}
+
+
+	@Override public ChartData remove(int theIndex) {
+		ChartData removed = get(theIndex);
+		_mySum -= removed.getValue();
+		if (theIndex == 0) {
+			head = (head + 1) % values.length;
+			_myFirst++;
+		} else {
+			for (int i = theIndex; i < count - 1; i++) {
+				values[(head + i) % values.length] = values[(head + i + 1) % values.length];
+			}
+			_myVersion++;
+		}
+		count--;
+		return removed;
+	}
+
+
+	@Override public boolean remove(Object theItem) {
+		int i = indexOf(theItem);
+		if (i < 0) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+
+
+	@Override public int indexOf(Object theItem) {
+		if (theItem instanceof ChartData) {
+			float v = ((ChartData) theItem).getValue();
+			for (int i = 0; i < count; i++) {
+				if (Float.compare(values[(head + i) % values.length], v) == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+
+	@Override public int lastIndexOf(Object theItem) {
+		if (theItem instanceof ChartData) {
+			float v = ((ChartData) theItem).getValue();
+			for (int i = count - 1; i >= 0; i--) {
+				if (Float.compare(values[(head + i) % values.length], v) == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+
+	@Override public boolean contains(Object theItem) {
+		return indexOf(theItem) >= 0;
+	}
+
+
+	@Override protected void removeRange(int theFrom, int theTo) {
+		for (int i = theFrom; i < theTo; i++) {
+			remove(theFrom);
+		}
+	}
+
+
+	@Override public boolean removeAll(Collection<?> theItems) {
+		return list().removeAll(theItems);
+	}
+
+
+	@Override public boolean retainAll(Collection<?> theItems) {
+		return list().retainAll(theItems);
+	}
+
+
+	@Override public boolean removeIf(Predicate<? super ChartData> theFilter) {
+		return list().removeIf(theFilter);
+	}
+
+
+	@Override public void replaceAll(UnaryOperator<ChartData> theOperator) {
+		list().replaceAll(theOperator);
+	}
+
+
+	@Override public void sort(Comparator<? super ChartData> theComparator) {
+		list().sort(theComparator);
+	}
+
+
+	@Override public void forEach(Consumer<? super ChartData> theAction) {
+		for (int i = 0; i < count; i++) {
+			theAction.accept(get(i));
+		}
+	}
+
+
+	@Override public Object[] toArray() {
+		return list().toArray();
+	}
+
+
+	@Override public <T> T[] toArray(T[] theArray) {
+		return list().toArray(theArray);
+	}
+
+
+	@Override public ListIterator<ChartData> listIterator() {
+		return list().listIterator();
+	}
+
+
+	@Override public ListIterator<ChartData> listIterator(int theIndex) {
+		return list().listIterator(theIndex);
+	}
+
+
+	@Override public List<ChartData> subList(int theFrom, int theTo) {
+		return list().subList(theFrom, theTo);
+	}
+
+
+	@Override public Spliterator<ChartData> spliterator() {
+		return list().spliterator();
+	}
+
+
+	/**
+	 * a stream equals a list of ChartData items with the same values in the same order.
+	 */
+	@Override public boolean equals(Object theObject) {
+		if (theObject == this) {
+			return true;
+		}
+		if (!(theObject instanceof List<?>) || ((List<?>) theObject).size() != count) {
+			return false;
+		}
+		int i = 0;
+		for (Object item : (List<?>) theObject) {
+			if (!(item instanceof ChartData) || Float.compare(((ChartData) item).getValue(), values[(head + i++) % values.length]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	@Override public int hashCode() {
+		int h = 1;
+		for (int i = 0; i < count; i++) {
+			h = 31 * h + Float.floatToIntBits(values[(head + i) % values.length]);
+		}
+		return h;
+	}
+
+
+	@Override public Object clone() {
+		ChartDataStream stream = (ChartDataStream) super.clone();
+		stream.values = values.clone();
+		return stream;
+	}
+
+
+	@Override public void clear() {
+		head = 0;
+		count = 0;
+		_myVersion++;
+		_mySum = 0;
+		isSumValid = true;
+	}
+
+
+	@Override protected int getEnvelopeSize() {
+		// the span of the envelope does not change while the stream fills up.
+		return values.length;
+	}
+
+
+	@Override public Iterator<ChartData> iterator() {
+		return new Iterator<ChartData>() {
+
+			int i = 0;
+
+
+			public boolean hasNext() {
+				return i < count;
+			}
+
+
+			public ChartData next() {
+				if (i >= count) {
+					throw new NoSuchElementException();
+				}
+				return get(i++);
+			}
+
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+
+	private void checkIndex(int theIndex) {
+		if (theIndex < 0 || theIndex >= count) {
+			throw new IndexOutOfBoundsException("Index: " + theIndex + ", Size: " + count);
+		}
+	}
+
+}
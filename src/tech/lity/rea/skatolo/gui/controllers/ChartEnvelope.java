@@ -0,0 +1,230 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.controllers;
+
+/**
+ * Used by Chart, a ChartEnvelope reduces the values of a ChartDataSet to buckets of a fixed number
+ * of consecutive values (the span) and keeps the minimum, maximum and mean of each bucket. Charts
+ * draw the envelope instead of every single value when a data set holds more values than there
+ * are pixels, so the number of vertices depends on the width of the chart while peaks stay
+ * visible.
+ * 
+ * Buckets are aligned to the absolute index of a value (see ChartDataSet.getFirstIndex()), values
+ * appended to a data set only update the last bucket and values removed from the beginning expire
+ * the first buckets. Any other change rebuilds the envelope.
+ */
+public class ChartEnvelope {
+
+	protected final int span;
+
+	protected final float[] min;
+
+	protected final float[] max;
+
+	protected final float[] sum;
+
+	protected final int[] count;
+
+	protected final long[] minAt;
+
+	protected final long[] maxAt;
+
+	// buckets firstBucket to firstBucket + numBuckets are stored, bucket b at index b % capacity.
+	protected long firstBucket;
+
+	protected int numBuckets;
+
+	protected ChartDataSet set;
+
+	protected int version;
+
+	// the absolute index behind the last value added to the envelope.
+	protected long end;
+
+
+	public ChartEnvelope(int theSpan, int theCapacity) {
+		span = Math.max(1, theSpan);
+		int n = Math.max(2, theCapacity);
+		min = new float[n];
+		max = new float[n];
+		sum = new float[n];
+		count = new int[n];
+		minAt = new long[n];
+		maxAt = new long[n];
+	}
+
+
+	/**
+	 * returns the span required to reduce theSize values to at most theColumns buckets.
+	 */
+	public static int getSpan(int theSize, int theColumns) {
+		return Math.max(1, (theSize + theColumns - 1) / Math.max(1, theColumns));
+	}
+
+
+	public int getSpan() {
+		return span;
+	}
+
+
+	/**
+	 * returns the maximum number of buckets.
+	 */
+	public int getCapacity() {
+		return min.length;
+	}
+
+
+	/**
+	 * brings the envelope up to date with the values of a data set.
+	 */
+	public ChartEnvelope update(ChartDataSet theSet) {
+		long first = theSet.getFirstIndex();
+		long last = first + theSet.size();
+		long needed = (last + span - 1) / span - first / span;
+		if (theSet != set || theSet.getVersion() != version || end < first || end > last || needed > min.length) {
+			set = theSet;
+			version = theSet.getVersion();
+			numBuckets = 0;
+			end = first;
+		}
+		for (long t = end; t < last; t++) {
+			add(t, theSet.getValue((int) (t - first)));
+		}
+		end = last;
+		while (numBuckets > 0 && (firstBucket + 1) * span <= first) {
+			firstBucket++;
+			numBuckets--;
+		}
+		if (numBuckets > 0 && firstBucket * span < first) {
+			// the first bucket still contains values which have been removed.
+			int b = slot(firstBucket);
+			count[b] = 0;
+			long stop = Math.min(last, (firstBucket + 1) * span);
+			for (long t = first; t < stop; t++) {
+				merge(b, t, theSet.getValue((int) (t - first)));
+			}
+		}
+		return this;
+	}
+
+
+	private void add(long theIndex, float theValue) {
+		long bucket = theIndex / span;
+		if (numBuckets == 0) {
+			firstBucket = bucket;
+			numBuckets = 1;
+			count[slot(bucket)] = 0;
+		} else if (bucket >= firstBucket + numBuckets) {
+			if (numBuckets == min.length) {
+				firstBucket++;
+				numBuckets--;
+			}
+			numBuckets++;
+			count[slot(bucket)] = 0;
+		}
+		merge(slot(bucket), theIndex, theValue);
+	}
+
+
+	private void merge(int theSlot, long theIndex, float theValue) {
+		if (count[theSlot] == 0) {
+			min[theSlot] = max[theSlot] = sum[theSlot] = theValue;
+			minAt[theSlot] = maxAt[theSlot] = theIndex;
+			count[theSlot] = 1;
+			return;
+		}
+		if (theValue < min[theSlot]) {
+			min[theSlot] = theValue;
+			minAt[theSlot] = theIndex;
+		}
+		if (theValue > max[theSlot]) {
+			max[theSlot] = theValue;
+			maxAt[theSlot] = theIndex;
+		}
+		sum[theSlot] += theValue;
+		count[theSlot]++;
+	}
+
+
+	private int slot(long theBucket) {
+		return (int) (theBucket % min.length);
+	}
+
+
+	/**
+	 * returns the number of buckets.
+	 */
+	public int size() {
+		return numBuckets;
+	}
+
+
+	/**
+	 * returns the bucket containing the value at theIndex relative to the first value of the data
+	 * set.
+	 */
+	public int indexOf(int theIndex) {
+		return (int) ((set.getFirstIndex() + theIndex) / span - firstBucket);
+	}
+
+
+	public float getMin(int theBucket) {
+		return min[slot(firstBucket + theBucket)];
+	}
+
+
+	public float getMax(int theBucket) {
+		return max[slot(firstBucket + theBucket)];
+	}
+
+
+	public float getMean(int theBucket) {
+		int b = slot(firstBucket + theBucket);
+		return sum[b] / count[b];
+	}
+
+
+	public int getCount(int theBucket) {
+		return count[slot(firstBucket + theBucket)];
+	}
+
+
+	/**
+	 * returns the index of the minimum of a bucket relative to the first value of the data set.
+	 */
+	public int getMinIndex(int theBucket) {
+		return (int) (minAt[slot(firstBucket + theBucket)] - set.getFirstIndex());
+	}
+
+
+	/**
+	 * returns the index of the maximum of a bucket relative to the first value of the data set.
+	 */
+	public int getMaxIndex(int theBucket) {
+		return (int) (maxAt[slot(firstBucket + theBucket)] - set.getFirstIndex());
+	}
+
+}
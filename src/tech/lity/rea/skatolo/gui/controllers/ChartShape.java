@@ -0,0 +1,237 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.controllers;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PShape;
+
+/**
+ * Used by Chart, a ChartShape keeps the geometry of a ChartDataSet in a retained PShape so that
+ * an unchanged data set is drawn without sending its vertices again. Values are stored in slots by
+ * their absolute index (see ChartDataSet.getFirstIndex()), when values are removed from the
+ * beginning or appended to the end of a set, only the slots of these values are updated and the
+ * shape is moved to the left. Slots are reserved up to the capacity of a ChartDataStream, or half
+ * the size of a growing set ahead, so a set which is still filling up does not create a new shape
+ * for each new value. When the spacing or the scale of the chart changes the vertices of the
+ * existing shape are set again, a new shape is only created when the renderer, the color or the
+ * stroke weight changes or when the set outgrows its slots.
+ */
+public class ChartShape {
+
+	public final static int LINE = 0;
+
+	public final static int AREA = 1;
+
+	public final static int BAR = 2;
+
+	// the position of the vertices of an unused slot, outside of any chart.
+	protected final static float HIDDEN = -1e6f;
+
+	protected final int type;
+
+	protected PShape shape;
+
+	protected PGraphics graphics;
+
+	// the number of slots, values for bars and segments between two values for lines and areas.
+	protected int slots;
+
+	// the number of slots in use.
+	protected int count;
+
+	// the absolute index of the value drawn at x = 0 when the shape was built.
+	protected long base;
+
+	protected long first;
+
+	protected int size;
+
+	protected int version;
+
+	protected float step;
+
+	protected float offset;
+
+	protected float barWidth;
+
+	protected int color;
+
+	protected float strokeWeight;
+
+	protected float min, max, width, height;
+
+
+	public ChartShape(int theType) {
+		type = theType;
+	}
+
+
+	/**
+	 * updates and draws the shape of a data set, theStep is the distance between two values and
+	 * theOffset and theBarWidth position the bars of a BAR shape.
+	 */
+	public void draw(PGraphics theGraphics, Chart theChart, ChartDataSet theSet, float theStep, float theOffset, float theBarWidth) {
+		int n = theSet.size();
+		int s = (type == BAR) ? n : n - 1;
+		if (s < 1) {
+			return;
+		}
+		long f = theSet.getFirstIndex();
+		int c = (type == BAR) ? theSet.getColorTable()[0] : theSet.getColor(0);
+		if (shape == null || graphics != theGraphics || s > slots || color != c || strokeWeight != theSet.getStrokeWeight()) {
+			build(theGraphics, theSet, getSlots(theSet, s), c);
+			layout(theChart, theSet, s, f, theStep, theOffset, theBarWidth);
+		} else if (version != theSet.getVersion() || f < first || f + s < first + count || f - base >= (1 << 16) || step != theStep
+				|| offset != theOffset || barWidth != theBarWidth || min != theChart._myMin || max != theChart._myMax
+				|| width != theChart.getWidth() || height != theChart.getHeight()) {
+			layout(theChart, theSet, s, f, theStep, theOffset, theBarWidth);
+		} else if (f > first || s > count) {
+			// the slots of the values removed from the beginning are hidden and then reused by the
+			// values appended to the end.
+			for (long j = first; j < Math.min(f, first + count); j++) {
+				hideSlot(j);
+			}
+			for (long j = Math.max(f, first + count); j < f + s; j++) {
+				setSlot(theChart, theSet, j, f);
+			}
+			first = f;
+			count = s;
+			size = n;
+		}
+		theGraphics.pushMatrix();
+		theGraphics.translate(-(first - base) * step, 0);
+		theGraphics.shape(shape);
+		theGraphics.popMatrix();
+	}
+
+
+	/**
+	 * returns the number of slots to reserve for theCount slots in use.
+	 */
+	protected int getSlots(ChartDataSet theSet, int theCount) {
+		if (theSet instanceof ChartDataStream) {
+			int capacity = ((ChartDataStream) theSet).getCapacity();
+			return Math.max(theCount, (type == BAR) ? capacity : capacity - 1);
+		}
+		return theCount + Math.max(16, theCount / 2);
+	}
+
+
+	/**
+	 * creates a new shape with theSlots hidden slots.
+	 */
+	protected void build(PGraphics theGraphics, ChartDataSet theSet, int theSlots, int theColor) {
+		graphics = theGraphics;
+		slots = theSlots;
+		count = 0;
+		color = theColor;
+		strokeWeight = theSet.getStrokeWeight();
+
+		shape = theGraphics.createShape();
+		shape.beginShape(type == LINE ? PConstants.LINES : PConstants.QUADS);
+		if (type == LINE) {
+			shape.noFill();
+			shape.stroke(color);
+			shape.strokeWeight(strokeWeight);
+		} else {
+			shape.noStroke();
+			shape.fill(color);
+		}
+		int perSlot = (type == LINE) ? 2 : 4;
+		for (int i = 0; i < slots * perSlot; i++) {
+			shape.vertex(HIDDEN, HIDDEN);
+		}
+		shape.endShape();
+	}
+
+
+	/**
+	 * sets the vertices of all values of the existing shape, used when the spacing, the scale or the
+	 * size of the chart changed.
+	 */
+	protected void layout(Chart theChart, ChartDataSet theSet, int theCount, long theFirst, float theStep, float theOffset, float theBarWidth) {
+		for (long j = first; j < first + count; j++) {
+			hideSlot(j);
+		}
+		count = theCount;
+		base = first = theFirst;
+		size = theSet.size();
+		version = theSet.getVersion();
+		step = theStep;
+		offset = theOffset;
+		barWidth = theBarWidth;
+		min = theChart._myMin;
+		max = theChart._myMax;
+		width = theChart.getWidth();
+		height = theChart.getHeight();
+		for (long j = first; j < first + count; j++) {
+			setSlot(theChart, theSet, j, first);
+		}
+	}
+
+
+	/**
+	 * moves the vertices of the slot of theIndex out of sight.
+	 */
+	protected void hideSlot(long theIndex) {
+		int perSlot = (type == LINE) ? 2 : 4;
+		int v = (int) (theIndex % slots) * perSlot;
+		for (int i = 0; i < perSlot; i++) {
+			shape.setVertex(v + i, HIDDEN, HIDDEN);
+		}
+	}
+
+
+	/**
+	 * sets the vertices of the slot of the value (or segment) with the absolute index theIndex.
+	 */
+	protected void setSlot(Chart theChart, ChartDataSet theSet, long theIndex, long theFirst) {
+		int i = (int) (theIndex - theFirst);
+		int v = (int) (theIndex % slots) * ((type == LINE) ? 2 : 4);
+		float x = (theIndex - base) * step;
+		if (type == BAR) {
+			float y = height - theChart.barHeight(theSet.getValue(i));
+			x += offset;
+			shape.setVertex(v, x, height);
+			shape.setVertex(v + 1, x, y);
+			shape.setVertex(v + 2, x + barWidth, y);
+			shape.setVertex(v + 3, x + barWidth, height);
+			return;
+		}
+		float y0 = theChart.valueToY(theSet.getValue(i));
+		float y1 = theChart.valueToY(theSet.getValue(i + 1));
+		if (type == LINE) {
+			shape.setVertex(v, x, y0);
+			shape.setVertex(v + 1, x + step, y1);
+		} else {
+			shape.setVertex(v, x, height);
+			shape.setVertex(v + 1, x, y0);
+			shape.setVertex(v + 2, x + step, y1);
+			shape.setVertex(v + 3, x + step, height);
+		}
+	}
+
+}
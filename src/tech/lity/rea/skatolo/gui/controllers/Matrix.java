@@ -29,6 +29,8 @@ import tech.lity.rea.skatolo.gui.Controller;
 import tech.lity.rea.skatolo.gui.group.ControllerGroup;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import processing.core.PApplet;
 import processing.core.PGraphics;
@@ -38,13 +40,16 @@ import processing.core.PGraphics;
  * x and y position of the corresponding cell will trigger an event and notify the program. see the skatolomatrix example for more
  * information.
  * 
+ * The steps of all matrices are timed by a shared MatrixClock, the cells of a column are triggered
+ * on the animation thread unless an executor is set with setExecutor(Executor).
+ * 
  * @example controllers/skatolomatrix
  */
 public class Matrix extends Controller<Matrix> {
 
 	protected int cnt;
 
-	protected int[][] _myCells;
+	protected MatrixCells _myCells;
 
 	protected int stepX;
 
@@ -70,7 +75,29 @@ public class Matrix extends Controller<Matrix> {
 
 	protected int _myMode = SINGLE_ROW;
 
-	private Thread t;
+	protected MatrixClock _myClock;
+
+	protected Executor _myExecutor;
+
+	// the interval of the matrix's own steps in nanoseconds, 0 while following the tempo of the clock.
+	// read by the clock thread without holding the lock of the matrix.
+	private volatile long _myPeriod = 0;
+
+	private long _myAnchor;
+
+	private long _myTicks;
+
+	// the last step delivered by the clock and the last step the cells have been triggered for.
+	private final AtomicLong _myStep = new AtomicLong(-1);
+
+	private long _myConsumed = -1;
+
+	private final Runnable _myStepTask = new Runnable() {
+
+		public void run() {
+			processSteps();
+		}
+	};
 
 	protected int gapX = 1;
 
@@ -105,7 +132,8 @@ public class Matrix extends Controller<Matrix> {
 		_myPlugName = getName();
 		_myCaptionLabel.align(Skatolo.LEFT, Skatolo.BOTTOM_OUTSIDE);
 		_myCaptionLabel.setPadding(0, 4);
-		runThread();
+		setClock(MatrixClock.getDefault());
+		theskatolo.getPApplet().registerMethod("pre", this);
 	}
 
 	public Matrix setGrid(int theCellX, int theCellY) {
@@ -114,31 +142,140 @@ public class Matrix extends Controller<Matrix> {
 		sum = _myCellX * _myCellY;
 		stepX = width / _myCellX;
 		stepY = height / _myCellY;
-		_myCells = new int[_myCellX][_myCellY];
-		for (int x = 0; x < _myCellX; x++) {
-			for (int y = 0; y < _myCellY; y++) {
-				_myCells[x][y] = 0;
-			}
-		}
+		_myCells = new MatrixCells(_myCellX, _myCellY);
 		return this;
 	}
 
 	/**
-	 * set the speed of intervals in millis iterating through the matrix.
+	 * set the speed of intervals in millis iterating through the matrix. By default a matrix follows
+	 * the tempo of its clock, an interval of 0 or less makes it follow the clock again.
 	 * 
 	 * @param theInterval int
 	 * @return Matrix
 	 */
 
-	public Matrix setInterval(int theInterval) {
+	public synchronized Matrix setInterval(int theInterval) {
 		_myInterval = theInterval;
+		_myPeriod = Math.max(0, theInterval) * 1000000L;
+		_myAnchor = System.nanoTime();
+		_myTicks = 0;
+		resetSteps();
+		if (_myClock != null) {
+			_myClock.wakeUp();
+		}
 		return this;
 	}
 
 	public int getInterval() {
+		if (isFollowingClock() && _myClock != null) {
+			return (int) _myClock.getStepInterval();
+		}
 		return _myInterval;
 	}
 
+	/**
+	 * sets the clock which times the steps of the matrix, matrices sharing a clock step together.
+	 * 
+	 * @see skatolo.MatrixClock
+	 */
+	public Matrix setClock(MatrixClock theClock) {
+		if (_myClock != null) {
+			_myClock.remove(this);
+		}
+		_myClock = theClock;
+		resetSteps();
+		if (_myClock != null) {
+			_myClock.add(this);
+		}
+		return this;
+	}
+
+	public MatrixClock getClock() {
+		return _myClock;
+	}
+
+	/**
+	 * triggers the cells on theExecutor instead of the animation thread, use null to go back to the
+	 * animation thread.
+	 */
+	public Matrix setExecutor(Executor theExecutor) {
+		_myExecutor = theExecutor;
+		return this;
+	}
+
+	public Executor getExecutor() {
+		return _myExecutor;
+	}
+
+	protected boolean isFollowingClock() {
+		return _myPeriod == 0;
+	}
+
+	private void resetSteps() {
+		_myStep.set(-1);
+		_myConsumed = -1;
+	}
+
+	/**
+	 * called by the clock thread for a matrix with its own interval, returns the time of the next
+	 * step.
+	 */
+	protected synchronized long tick(long theTime) {
+		if (_myPeriod == 0) {
+			// the interval was reset after the clock checked isFollowingClock().
+			return Long.MAX_VALUE;
+		}
+		long due = _myAnchor + (_myTicks + 1) * _myPeriod;
+		if (theTime >= due) {
+			_myTicks = (theTime - _myAnchor) / _myPeriod;
+			deliver(_myTicks);
+			due = _myAnchor + (_myTicks + 1) * _myPeriod;
+		}
+		return due;
+	}
+
+	/**
+	 * called by the clock thread when a step is due.
+	 */
+	protected void deliver(long theStep) {
+		_myStep.set(theStep);
+		Executor executor = _myExecutor;
+		if (executor != null) {
+			executor.execute(_myStepTask);
+		}
+	}
+
+	/**
+	 * @exclude
+	 */
+	public void pre() {
+		if (_myExecutor == null) {
+			processSteps();
+		}
+	}
+
+	/**
+	 * triggers the columns of the steps delivered since the last call, at most one pass through the
+	 * matrix when steps have been missed.
+	 */
+	protected void processSteps() {
+		// not synchronized on the matrix, the clock thread must not wait for the triggered events.
+		synchronized (_myStepTask) {
+			long s = _myStep.get();
+			if (s < 0 || s == _myConsumed) {
+				return;
+			}
+			long from = (_myConsumed < 0 || _myConsumed > s) ? s : Math.max(_myConsumed + 1, s - _myCellX + 1);
+			_myConsumed = s;
+			for (long k = from; k <= s; k++) {
+				if (playing) {
+					cnt = isFollowingClock() ? (int) (k % _myCellX) : (cnt + 1) % _myCellX;
+					trigger(cnt);
+				}
+			}
+		}
+	}
+
 	public Matrix updateInternalEvents(PApplet theApplet) {
 	// TODO: check this. 	
             setPointerOver(computeIsInside());
@@ -149,25 +286,18 @@ public class Matrix extends Controller<Matrix> {
 				int tY = (int) ((getWindow().getPointerY() - position.y) / stepY);
 
 				if (tX != currentX || tY != currentY) {
-					tX = PApplet.min(PApplet.max(0, tX), _myCellX);
-					tY = PApplet.min(PApplet.max(0, tY), _myCellY);
-					boolean isMarkerActive = (_myCells[tX][tY] == 1) ? true : false;
+					tX = PApplet.min(PApplet.max(0, tX), _myCellX - 1);
+					tY = PApplet.min(PApplet.max(0, tY), _myCellY - 1);
+					boolean isMarkerActive = _myCells.get(tX, tY);
 					switch (_myMode) {
 					default:
 					case (SINGLE_COLUMN):
-						for (int i = 0; i < _myCellY; i++) {
-							_myCells[tX][i] = 0;
-						}
-						_myCells[tX][tY] = (!isMarkerActive) ? 1 : _myCells[tX][tY];
-						break;
 					case (SINGLE_ROW):
-						for (int i = 0; i < _myCellY; i++) {
-							_myCells[tX][i] = 0;
-						}
-						_myCells[tX][tY] = (!isMarkerActive) ? 1 : _myCells[tX][tY];
+						_myCells.clearColumn(tX);
+						_myCells.set(tX, tY, !isMarkerActive);
 						break;
 					case (MULTIPLES):
-						_myCells[tX][tY] = (_myCells[tX][tY] == 1) ? 0 : 1;
+						_myCells.invert(tX, tY);
 						break;
 					}
 					currentX = tX;
@@ -234,30 +364,28 @@ public class Matrix extends Controller<Matrix> {
 
 	public Matrix trigger(int theColumn) {
 
-		if (theColumn < 0 || theColumn >= _myCells.length) {
+		if (theColumn < 0 || theColumn >= _myCellX) {
 			return this;
 		}
 
-		for (int i = 0; i < _myCellY; i++) {
-			if (_myCells[theColumn][i] == 1) {
-				_myValue = 0;
-				_myValue = (theColumn << 0) + (i << 8);
-				setValue(_myValue);
-				try {
-					Method method = _myPlug.getClass().getMethod(_myPlugName, int.class, int.class);
-					method.setAccessible(true);
-					method.invoke(_myPlug, theColumn, i);
-				} catch (SecurityException ex) {
-					ex.printStackTrace();
-				} catch (NoSuchMethodException ex) {
-					ex.printStackTrace();
-				} catch (IllegalArgumentException ex) {
-					ex.printStackTrace();
-				} catch (IllegalAccessException ex) {
-					ex.printStackTrace();
-				} catch (InvocationTargetException ex) {
-					ex.printStackTrace();
-				}
+		for (int i = _myCells.nextActiveRow(theColumn, 0); i >= 0; i = _myCells.nextActiveRow(theColumn, i + 1)) {
+			_myValue = 0;
+			_myValue = (theColumn << 0) + (i << 8);
+			setValue(_myValue);
+			try {
+				Method method = _myPlug.getClass().getMethod(_myPlugName, int.class, int.class);
+				method.setAccessible(true);
+				method.invoke(_myPlug, theColumn, i);
+			} catch (SecurityException ex) {
+				ex.printStackTrace();
+			} catch (NoSuchMethodException ex) {
+				ex.printStackTrace();
+			} catch (IllegalArgumentException ex) {
+				ex.printStackTrace();
+			} catch (IllegalAccessException ex) {
+				ex.printStackTrace();
+			} catch (InvocationTargetException ex) {
+				ex.printStackTrace();
 			}
 		}
 		return this;
@@ -293,23 +421,60 @@ public class Matrix extends Controller<Matrix> {
 	 * @return Matrix
 	 */
 	public Matrix set(int theX, int theY, boolean theValue) {
-		_myCells[theX][theY] = (theValue == true) ? 1 : 0;
+		_myCells.set(theX, theY, theValue);
+		return this;
+	}
+
+	/**
+	 * sets the state of all cells from column theX0 to theX1 and row theY0 to theY1 (inclusive).
+	 */
+	public Matrix set(int theX0, int theY0, int theX1, int theY1, boolean theValue) {
+		_myCells.set(theX0, theY0, theX1, theY1, theValue);
 		return this;
 	}
 
 	public boolean get(int theX, int theY) {
-		return _myCells[theX][theY] == 1 ? true : false;
+		return _myCells.get(theX, theY);
 	}
 
 	public Matrix clear() {
-		for (int x = 0; x < _myCells.length; x++) {
-			for (int y = 0; y < _myCells[x].length; y++) {
-				_myCells[x][y] = 0;
-			}
-		}
+		_myCells.clear();
+		return this;
+	}
+
+	public Matrix invert() {
+		_myCells.invert();
+		return this;
+	}
+
+	public Matrix invert(int theX0, int theY0, int theX1, int theY1) {
+		_myCells.invert(theX0, theY0, theX1, theY1);
 		return this;
 	}
 
+	/**
+	 * returns the number of active cells in a column.
+	 */
+	public int getColumnCount(int theX) {
+		return _myCells.getColumnCount(theX);
+	}
+
+	/**
+	 * returns the number of active cells in a row.
+	 */
+	public int getRowCount(int theY) {
+		return _myCells.getRowCount(theY);
+	}
+
+	/**
+	 * returns the cells of the matrix as bitset.
+	 * 
+	 * @see skatolo.MatrixCells
+	 */
+	public MatrixCells getMatrixCells() {
+		return _myCells;
+	}
+
 	public static int getX(int thePosition) {
 		return ((thePosition >> 0) & 0xff);
 	}
@@ -328,45 +493,32 @@ public class Matrix extends Controller<Matrix> {
 
 	public Matrix setCells(int[][] theCells) {
 		setGrid(theCells.length, theCells[0].length);
-		_myCells = theCells;
+		_myCells.set(theCells);
 		return this;
 	}
 
+	/**
+	 * returns a copy of the cells, 1 for active and 0 for inactive cells.
+	 */
 	public int[][] getCells() {
-		return _myCells;
+		return _myCells.toArray();
 	}
 
-	private void triggerEventFromThread() {
-		if (playing) {
-			cnt += 1;
-			cnt %= _myCellX;
-			trigger(cnt);
-		}
+	/**
+	 * returns a compact copy of the cells, see MatrixCells.toLongArray().
+	 */
+	public long[] getCellBits() {
+		return _myCells.toLongArray();
 	}
 
-	private void runThread() {
-		if (t == null) {
-			t = new Thread(getName()) {
-
-				public void run() {
-					while (true) {
-						triggerEventFromThread();
-						try {
-							sleep(_myInterval);
-						} catch (InterruptedException e) {
-							// throw new RuntimeException(e);
-						}
-					}
-				}
-			};
-			t.start();
-		}
+	public Matrix setCellBits(long[] theBits) {
+		_myCells.set(theBits);
+		return this;
 	}
 
 	@Override public void remove() {
-		if (t != null) {
-			t.interrupt();
-		}
+		setClock(null);
+		skatolo.getPApplet().unregisterMethod("pre", this);
 		super.remove();
 	}
 
@@ -414,25 +566,15 @@ public class Matrix extends Controller<Matrix> {
 			graphics.noStroke();
 			graphics.fill(bg);
 			graphics.rect(0, 0, width, height);
-			for (int x = 0; x < _myCellX; x++) {
-				for (int y = 0; y < _myCellY; y++) {
-
-					if (_myCells[x][y] == 1) {
-						graphics.fill(color.getActive());
-						graphics.rect(x * stepX, y * stepY, stepX - gapX, stepY - gapY);
-					} else {
-						graphics.fill(color.getBackground());
-						graphics.rect(x * stepX, y * stepY, stepX - gapX, stepY - gapY);
-					}
-				}
-			}
+			drawCells(graphics, false, color.getBackground());
+			drawCells(graphics, true, color.getActive());
 			if (isPointerOver()) {
                             
                             // TODO: getMouseX() & getMouseY() here ? Why ?!
                             int x = (int) ((getWindow().getPointerX() - position.x) / stepX);
                             int y = (int) ((getWindow().getPointerY() - position.y) / stepY);
                             if (x >= 0 && x < _myCellX && y >= 0 && y < _myCellY) {
-					graphics.fill(_myCells[x][y] == 1 ? color.getActive() : color.getForeground());
+					graphics.fill(_myCells.get(x, y) ? color.getActive() : color.getForeground());
 					graphics.rect(x * stepX, y * stepY, stepX - gapX, stepY - gapY);
                             }
 			}
@@ -442,5 +584,39 @@ public class Matrix extends Controller<Matrix> {
 				_myCaptionLabel.draw(graphics, 0, 0, theController);
 			}
 		}
+
+		/**
+		 * draws the active or inactive cells as one shape, runs of cells in a column are joined
+		 * into a single quad when there is no vertical gap between cells.
+		 */
+		private void drawCells(PGraphics graphics, boolean theActiveFlag, int theColor) {
+			graphics.fill(theColor);
+			graphics.beginShape(PApplet.QUADS);
+			for (int x = 0; x < _myCellX; x++) {
+				int y0 = theActiveFlag ? _myCells.nextActiveRow(x, 0) : _myCells.nextInactiveRow(x, 0);
+				while (y0 >= 0 && y0 < _myCellY) {
+					int y1 = theActiveFlag ? _myCells.nextInactiveRow(x, y0) : _myCells.nextActiveRow(x, y0);
+					if (y1 < 0) {
+						y1 = _myCellY;
+					}
+					if (gapY == 0) {
+						quad(graphics, x * stepX, y0 * stepY, stepX - gapX, (y1 - y0) * stepY);
+					} else {
+						for (int y = y0; y < y1; y++) {
+							quad(graphics, x * stepX, y * stepY, stepX - gapX, stepY - gapY);
+						}
+					}
+					y0 = theActiveFlag ? _myCells.nextActiveRow(x, y1) : _myCells.nextInactiveRow(x, y1);
+				}
+			}
+			graphics.endShape();
+		}
+
+		private void quad(PGraphics graphics, float theX, float theY, float theW, float theH) {
+			graphics.vertex(theX, theY);
+			graphics.vertex(theX + theW, theY);
+			graphics.vertex(theX + theW, theY + theH);
+			graphics.vertex(theX, theY + theH);
+		}
 	}
 }
@@ -0,0 +1,292 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.controllers;
+
+import java.util.Arrays;
+
+/**
+ * Used by Matrix, MatrixCells stores the state of the cells of a grid in a bitset. The rows of a
+ * column are packed into consecutive longs, so a column can be searched for its active rows, counted
+ * and changed a word at a time.
+ * 
+ * @see skatolo.Matrix
+ */
+public class MatrixCells {
+
+	protected final int columns;
+
+	protected final int rows;
+
+	// the number of longs per column.
+	protected final int words;
+
+	protected final long[] bits;
+
+	private final static int SET = 0;
+
+	private final static int CLEAR = 1;
+
+	private final static int INVERT = 2;
+
+
+	public MatrixCells(int theColumns, int theRows) {
+		columns = Math.max(0, theColumns);
+		rows = Math.max(0, theRows);
+		words = (rows + 63) >>> 6;
+		bits = new long[columns * words];
+	}
+
+
+	public int getColumns() {
+		return columns;
+	}
+
+
+	public int getRows() {
+		return rows;
+	}
+
+
+	public boolean get(int theX, int theY) {
+		return (bits[theX * words + (theY >>> 6)] & (1L << theY)) != 0;
+	}
+
+
+	public MatrixCells set(int theX, int theY, boolean theValue) {
+		int i = theX * words + (theY >>> 6);
+		if (theValue) {
+			bits[i] |= 1L << theY;
+		} else {
+			bits[i] &= ~(1L << theY);
+		}
+		return this;
+	}
+
+
+	public MatrixCells invert(int theX, int theY) {
+		bits[theX * words + (theY >>> 6)] ^= 1L << theY;
+		return this;
+	}
+
+
+	/**
+	 * sets all cells from column theX0 to theX1 and row theY0 to theY1 (inclusive).
+	 */
+	public MatrixCells set(int theX0, int theY0, int theX1, int theY1, boolean theValue) {
+		return apply(theX0, theY0, theX1, theY1, theValue ? SET : CLEAR);
+	}
+
+
+	/**
+	 * inverts all cells from column theX0 to theX1 and row theY0 to theY1 (inclusive).
+	 */
+	public MatrixCells invert(int theX0, int theY0, int theX1, int theY1) {
+		return apply(theX0, theY0, theX1, theY1, INVERT);
+	}
+
+
+	public MatrixCells invert() {
+		return invert(0, 0, columns - 1, rows - 1);
+	}
+
+
+	public MatrixCells clear() {
+		Arrays.fill(bits, 0);
+		return this;
+	}
+
+
+	public MatrixCells clearColumn(int theX) {
+		Arrays.fill(bits, theX * words, (theX + 1) * words, 0);
+		return this;
+	}
+
+
+	private MatrixCells apply(int theX0, int theY0, int theX1, int theY1, int theOp) {
+		int x0 = Math.max(0, Math.min(theX0, theX1));
+		int x1 = Math.min(columns - 1, Math.max(theX0, theX1));
+		int y0 = Math.max(0, Math.min(theY0, theY1));
+		int y1 = Math.min(rows - 1, Math.max(theY0, theY1));
+		if (x0 > x1 || y0 > y1) {
+			return this;
+		}
+		int w0 = y0 >>> 6;
+		int w1 = y1 >>> 6;
+		for (int x = x0; x <= x1; x++) {
+			for (int w = w0; w <= w1; w++) {
+				long mask = -1L;
+				if (w == w0) {
+					mask &= -1L << y0;
+				}
+				if (w == w1) {
+					mask &= -1L >>> (63 - (y1 & 63));
+				}
+				int i = x * words + w;
+				switch (theOp) {
+				case (SET):
+					bits[i] |= mask;
+					break;
+				case (CLEAR):
+					bits[i] &= ~mask;
+					break;
+				default:
+					bits[i] ^= mask;
+					break;
+				}
+			}
+		}
+		return this;
+	}
+
+
+	/**
+	 * returns the first active row of a column at or below theRow, or -1.
+	 */
+	public int nextActiveRow(int theX, int theRow) {
+		if (theRow >= rows) {
+			return -1;
+		}
+		int w = theRow >>> 6;
+		long word = bits[theX * words + w] & (-1L << theRow);
+		while (true) {
+			if (word != 0) {
+				int row = (w << 6) + Long.numberOfTrailingZeros(word);
+				return (row < rows) ? row : -1;
+			}
+			if (++w == words) {
+				return -1;
+			}
+			word = bits[theX * words + w];
+		}
+	}
+
+
+	/**
+	 * returns the first inactive row of a column at or below theRow, or the number of rows.
+	 */
+	public int nextInactiveRow(int theX, int theRow) {
+		if (theRow >= rows) {
+			return rows;
+		}
+		int w = theRow >>> 6;
+		long word = ~bits[theX * words + w] & (-1L << theRow);
+		while (true) {
+			if (word != 0) {
+				return Math.min(rows, (w << 6) + Long.numberOfTrailingZeros(word));
+			}
+			if (++w == words) {
+				return rows;
+			}
+			word = ~bits[theX * words + w];
+		}
+	}
+
+
+	/**
+	 * returns the number of active cells in a column.
+	 */
+	public int getColumnCount(int theX) {
+		int n = 0;
+		for (int i = theX * words; i < (theX + 1) * words; i++) {
+			n += Long.bitCount(bits[i]);
+		}
+		return n;
+	}
+
+
+	/**
+	 * returns the number of active cells in a row.
+	 */
+	public int getRowCount(int theY) {
+		int n = 0;
+		int w = theY >>> 6;
+		for (int x = 0; x < columns; x++) {
+			n += (int) (bits[x * words + w] >>> theY) & 1;
+		}
+		return n;
+	}
+
+
+	/**
+	 * returns the number of active cells.
+	 */
+	public int getCount() {
+		int n = 0;
+		for (long word : bits) {
+			n += Long.bitCount(word);
+		}
+		return n;
+	}
+
+
+	/**
+	 * returns a copy of the bitset, column by column with (rows + 63) / 64 longs per column, bit y of
+	 * a column is the cell in row y.
+	 */
+	public long[] toLongArray() {
+		return bits.clone();
+	}
+
+
+	/**
+	 * sets the cells from an array in the layout returned by toLongArray(), bits beyond the last row
+	 * of a column are ignored.
+	 */
+	public MatrixCells set(long[] theBits) {
+		System.arraycopy(theBits, 0, bits, 0, Math.min(theBits.length, bits.length));
+		if ((rows & 63) != 0) {
+			long mask = (1L << rows) - 1;
+			for (int i = words - 1; i < bits.length; i += words) {
+				bits[i] &= mask;
+			}
+		}
+		return this;
+	}
+
+
+	public int[][] toArray() {
+		int[][] cells = new int[columns][rows];
+		for (int x = 0; x < columns; x++) {
+			for (int y = nextActiveRow(x, 0); y >= 0; y = nextActiveRow(x, y + 1)) {
+				cells[x][y] = 1;
+			}
+		}
+		return cells;
+	}
+
+
+	public MatrixCells set(int[][] theCells) {
+		clear();
+		for (int x = 0; x < Math.min(columns, theCells.length); x++) {
+			for (int y = 0; y < Math.min(rows, theCells[x].length); y++) {
+				if (theCells[x][y] == 1) {
+					set(x, y, true);
+				}
+			}
+		}
+		return this;
+	}
+
+}
@@ -0,0 +1,206 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.controllers;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A MatrixClock drives the steps of Matrix sequencers from a single daemon thread. Steps are
+ * scheduled at absolute deadlines (start + n * step interval), so the time spent triggering cells
+ * does not add up to a drift. Matrices following the tempo of a clock step together, a matrix
+ * with its own interval (see Matrix.setInterval(int)) is scheduled by the same thread. The thread
+ * only delivers step numbers, the cells of a Matrix are triggered on the animation thread or on an
+ * executor chosen with Matrix.setExecutor(Executor).
+ * 
+ * @see skatolo.Matrix
+ */
+public class MatrixClock implements Runnable {
+
+	private static MatrixClock shared;
+
+	private final CopyOnWriteArrayList<Matrix> matrices = new CopyOnWriteArrayList<Matrix>();
+
+	private volatile Thread thread;
+
+	private float bpm;
+
+	private int stepsPerBeat = 4;
+
+	// the length of a step in nanoseconds.
+	private long period;
+
+	// the time and number of the step the schedule is counted from, changed when the tempo changes.
+	private long anchorTime;
+
+	private long anchorStep;
+
+	private volatile long step = -1;
+
+
+	/**
+	 * creates a clock running at 150 beats per minute with 4 steps per beat, a step every 100
+	 * milliseconds.
+	 */
+	public MatrixClock() {
+		setBPM(150);
+	}
+
+
+	/**
+	 * returns the clock shared by all matrices which have not been assigned another clock.
+	 */
+	public static synchronized MatrixClock getDefault() {
+		if (shared == null) {
+			shared = new MatrixClock();
+		}
+		return shared;
+	}
+
+
+	public synchronized MatrixClock setBPM(float theBPM) {
+		bpm = Math.max(1, theBPM);
+		updatePeriod();
+		return this;
+	}
+
+
+	public float getBPM() {
+		return bpm;
+	}
+
+
+	public synchronized MatrixClock setStepsPerBeat(int theSteps) {
+		stepsPerBeat = Math.max(1, theSteps);
+		updatePeriod();
+		return this;
+	}
+
+
+	public int getStepsPerBeat() {
+		return stepsPerBeat;
+	}
+
+
+	/**
+	 * returns the length of a step in milliseconds.
+	 */
+	public float getStepInterval() {
+		return period / 1000000f;
+	}
+
+
+	/**
+	 * returns the number of the last step, steps are counted from 0 when the first matrix is added.
+	 */
+	public long getStep() {
+		return step;
+	}
+
+
+	private void updatePeriod() {
+		long now = System.nanoTime();
+		if (period > 0 && thread != null) {
+			// continue from the last step so that the steps before keep their time.
+			anchorTime = anchorTime + (step + 1 - anchorStep) * period;
+			anchorStep = step + 1;
+			if (anchorTime > now + period) {
+				anchorTime = now;
+			}
+		}
+		period = (long) (60000000000.0 / (bpm * stepsPerBeat));
+		wakeUp();
+	}
+
+
+	protected synchronized void add(Matrix theMatrix) {
+		if (!matrices.contains(theMatrix)) {
+			matrices.add(theMatrix);
+		}
+		if (thread == null) {
+			anchorTime = System.nanoTime();
+			anchorStep = step + 1;
+			thread = new Thread(this, "MatrixClock");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		wakeUp();
+	}
+
+
+	protected synchronized void remove(Matrix theMatrix) {
+		matrices.remove(theMatrix);
+		wakeUp();
+	}
+
+
+	/**
+	 * wakes the clock thread up to calculate the next deadline again.
+	 */
+	protected void wakeUp() {
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+
+	/**
+	 * @exclude
+	 */
+	public void run() {
+		while (true) {
+			long now = System.nanoTime();
+			long due;
+			boolean isStep = false;
+			synchronized (this) {
+				if (matrices.isEmpty()) {
+					thread = null;
+					return;
+				}
+				due = anchorTime + (step + 1 - anchorStep) * period;
+				if (now >= due) {
+					// steps missed because the thread was not scheduled in time are skipped.
+					step = anchorStep + (now - anchorTime) / period;
+					due = anchorTime + (step + 1 - anchorStep) * period;
+					isStep = true;
+				}
+			}
+			for (Matrix m : matrices) {
+				if (m.isFollowingClock()) {
+					if (isStep) {
+						m.deliver(step);
+					}
+				} else {
+					due = Math.min(due, m.tick(now));
+				}
+			}
+			long wait = due - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.controllers;
+
+/**
+ * A gap buffer holding the text of a Textfield. Characters are inserted
+ * and deleted at a gap which follows the cursor, so typing and deleting
+ * at the cursor does not copy the rest of the text.
+ *
+ * @see skatolo.Textfield
+ */
+public class TextBuffer implements CharSequence {
+
+    private char[] buffer;
+
+    private int gapStart;
+
+    private int gapEnd;
+
+    private String text;
+
+    public TextBuffer() {
+        this("");
+    }
+
+    public TextBuffer(CharSequence theText) {
+        buffer = new char[0];
+        set(theText);
+    }
+
+    /**
+     * replaces the content of the buffer.
+     */
+    public TextBuffer set(CharSequence theText) {
+        int n = theText.length();
+        if (buffer.length < n + 16) {
+            buffer = new char[n + 16];
+        }
+        for (int i = 0; i < n; i++) {
+            buffer[i] = theText.charAt(i);
+        }
+        gapStart = n;
+        gapEnd = buffer.length;
+        text = null;
+        return this;
+    }
+
+    public TextBuffer clear() {
+        gapStart = 0;
+        gapEnd = buffer.length;
+        text = null;
+        return this;
+    }
+
+    public TextBuffer insert(int theIndex, char theChar) {
+        if (theIndex < 0 || theIndex > length()) {
+            throw new StringIndexOutOfBoundsException(theIndex);
+        }
+        moveGap(theIndex);
+        if (gapStart == gapEnd) {
+            grow();
+        }
+        buffer[gapStart++] = theChar;
+        text = null;
+        return this;
+    }
+
+    public TextBuffer deleteCharAt(int theIndex) {
+        if (theIndex < 0 || theIndex >= length()) {
+            throw new StringIndexOutOfBoundsException(theIndex);
+        }
+        moveGap(theIndex);
+        gapEnd++;
+        text = null;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return buffer.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int theIndex) {
+        if (theIndex < 0 || theIndex >= length()) {
+            throw new StringIndexOutOfBoundsException(theIndex);
+        }
+        return theIndex < gapStart ? buffer[theIndex] : buffer[theIndex + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int theStart, int theEnd) {
+        return substring(theStart, theEnd);
+    }
+
+    public String substring(int theStart, int theEnd) {
+        if (theStart < 0 || theEnd > length() || theStart > theEnd) {
+            throw new StringIndexOutOfBoundsException("start " + theStart + ", end " + theEnd + ", length " + length());
+        }
+        if (theEnd <= gapStart) {
+            return new String(buffer, theStart, theEnd - theStart);
+        }
+        if (theStart >= gapStart) {
+            return new String(buffer, theStart + gapEnd - gapStart, theEnd - theStart);
+        }
+        StringBuilder s = new StringBuilder(theEnd - theStart);
+        s.append(buffer, theStart, gapStart - theStart);
+        s.append(buffer, gapEnd, theEnd - gapStart);
+        return s.toString();
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) {
+            text = substring(0, length());
+        }
+        return text;
+    }
+
+    private void moveGap(int theIndex) {
+        if (theIndex < gapStart) {
+            int n = gapStart - theIndex;
+            System.arraycopy(buffer, theIndex, buffer, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        } else if (theIndex > gapStart) {
+            int n = theIndex - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+    }
+
+    private void grow() {
+        int tail = buffer.length - gapEnd;
+        char[] b = new char[buffer.length * 2 + 16];
+        System.arraycopy(buffer, 0, b, 0, gapStart);
+        System.arraycopy(buffer, gapEnd, b, b.length - tail, tail);
+        gapEnd = b.length - tail;
+        buffer = b;
+    }
+}
@@ -61,7 +61,7 @@ public class Textfield extends Controller<Textfield> {
 
     protected boolean isKeepFocus;
 
-    protected StringBuffer _myTextBuffer = new StringBuffer();
+    protected TextBuffer _myTextBuffer = new TextBuffer();
 
     protected int _myTextBufferIndex = 0;
 
@@ -260,7 +260,7 @@ public class Textfield extends Controller<Textfield> {
     }
 
     public Textfield setValue(String theText) {
-            _myTextBuffer = new StringBuffer(theText);
+            _myTextBuffer.set(theText);
             setIndex(_myTextBuffer.length());
             changed = true;
             return this;
@@ -271,8 +271,8 @@ public class Textfield extends Controller<Textfield> {
     }
 
     public Textfield clear() {
-            // create a new text buffer
-            _myTextBuffer = new StringBuffer();
+            // empty the text buffer
+            _myTextBuffer.clear();
             // reset the buffer index
             setIndex(0);
             return this;
@@ -369,63 +369,75 @@ public class Textfield extends Controller<Textfield> {
             graphics.popStyle();
     }
 
+    /**
+     * updates the visible part of the text. the window of visible characters starts at
+     * _myTextBufferOverflow and is moved just enough to keep the cursor inside, only the characters
+     * around the cursor are measured so that the cost does not depend on the length of the text.
+     */
     private void updateLabel(PGraphics graphics) {
             if (_myInputFilter == InputFilter.BITFONT) {
                     setInputFilter(DEFAULT);
             }
-            String str = passCheck(getText());
-            String t1 = str;
-            int off = margin * 2;
-            int ww = ControlFont.getWidthFor(str, _myValueLabel, graphics);
-            if ((ww < getWidth() - off)) {
-                    _myTextBufferIndexPosition = ControlFont.getWidthFor(t1.substring(0, _myTextBufferIndex), _myValueLabel,
-                                    graphics);
-                    len = getWidth();
-            } else {
-                    char[] c = str.toCharArray();
-                    int mx = 0;
-                    int n = 0;
-                    for (int i = 0; i < c.length; i++) {
-                            n += graphics.textWidth(c[i]);
-                            if (n > _myValueLabel.getWidth() - off) {
-                                    break;
-                            }
-                            len = n;
-                            mx++;
+            ControlFont font = _myValueLabel.getFont();
+            int length = _myTextBuffer.length();
+            int available = getWidth() - margin * 2;
+            int start = PApplet.min(_myTextBufferOverflow, _myTextBufferIndex);
+
+            // move the window forward until the cursor fits
+            float w = 0;
+            int i = _myTextBufferIndex;
+            while (i > start) {
+                    float a = charWidth(font, graphics, i - 1);
+                    if (w + a > available) {
+                            break;
                     }
-                    t1 = "";
-                    n = 0;
-                    // this is messed up an occasionally throws ArrayIndexOutOfBounds Exceptions
-                    // sometimes the beginning of the text is not in order when text length exceeds
-                    // length of textfield.
-                    // needs fixing. TODO
-                    for (int i = PApplet.max(mx, _myTextBufferIndex - 1); i >= 0; i--) {
-                            try {
-                                    n += graphics.textWidth(c[i]);
-                            } catch (Exception e) {
-                            }
-                            t1 = c[i] + t1;
-                            if (n >= _myValueLabel.getWidth() - off - 4) {
-                                    _myTextBufferOverflow = str.indexOf(t1);
-                                    break;
-                            }
+                    w += a;
+                    i--;
+            }
+            start = i;
+
+            // collect the characters that fit behind the start of the window
+            float x = 0;
+            float cursor = 0;
+            int end = start;
+            while (end < length) {
+                    float a = charWidth(font, graphics, end);
+                    if (x + a > available) {
+                            break;
+                    }
+                    x += a;
+                    end++;
+                    if (end == _myTextBufferIndex) {
+                            cursor = x;
                     }
-                    int strn = PApplet.max(0, PApplet.min(t1.length(), _myTextBufferIndex - _myTextBufferOverflow));
-                    _myTextBufferIndexPosition = ControlFont.getWidthFor(t1.substring(0, strn), _myValueLabel, graphics);
             }
-            _myValueLabel.setText(t1);
-            changed = false;
-    }
-    
-    private String passCheck(String label) {
-            if (!isPasswordMode) {
-                    return label;
+
+            // move the window back when there is space left at the end of the text
+            while (end == length && start > 0) {
+                    float a = charWidth(font, graphics, start - 1);
+                    if (x + a > available) {
+                            break;
+                    }
+                    x += a;
+                    cursor += a;
+                    start--;
             }
-            String newlabel = "";
-            for (int i=0;i<label.length();i++) {
-                    newlabel += "*";
+
+            _myTextBufferOverflow = start;
+            _myTextBufferIndexPosition = (int) cursor;
+            len = getWidth();
+            if (isPasswordMode) {
+                    char[] mask = new char[end - start];
+                    Arrays.fill(mask, '*');
+                    _myValueLabel.setText(new String(mask));
+            } else {
+                    _myValueLabel.setText(_myTextBuffer.substring(start, end));
             }
-            return newlabel;
+            changed = false;
+    }
+
+    private float charWidth(ControlFont theFont, PGraphics graphics, int theIndex) {
+            return theFont.charWidth(graphics, isPasswordMode ? '*' : _myTextBuffer.charAt(theIndex));
     }
 
     public void keyEvent(KeyEvent theKeyEvent) {
@@ -530,7 +542,7 @@ public class Textfield extends Controller<Textfield> {
                             return;
                     }
                     _myHistoryIndex = PApplet.max(0, --_myHistoryIndex);
-                    _myTextBuffer = new StringBuffer(_myHistory.get(_myHistoryIndex));
+                    _myTextBuffer.set(_myHistory.get(_myHistoryIndex));
                     setIndex(_myTextBuffer.length());
             }
     }
@@ -543,7 +555,7 @@ public class Textfield extends Controller<Textfield> {
                     }
 
                     _myHistoryIndex = PApplet.min(_myHistory.size() - 1, ++_myHistoryIndex);
-                    _myTextBuffer = new StringBuffer(_myHistory.get(_myHistoryIndex));
+                    _myTextBuffer.set(_myHistory.get(_myHistoryIndex));
                     setIndex(_myTextBuffer.length());
             }
     }
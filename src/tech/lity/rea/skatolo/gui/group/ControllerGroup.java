@@ -356,9 +356,22 @@ public abstract class ControllerGroup<T> implements ControllerInterface<T>, Skat
      * @param theY float
      */
     public T setPosition(float theX, float theY) {
+        setRelativePosition(theX, theY);
+        updateAbsolutePosition();
+        return me;
+    }
+
+    /**
+     * sets the position of this group without updating the absolute position
+     * of the group and its controllers. Used when many groups are moved at
+     * once, updateAbsolutePosition() then needs to be called once for each
+     * moved group which is not inside another moved group.
+     *
+     * @exclude
+     */
+    public T setRelativePosition(float theX, float theY) {
         position.set((int) theX, (int) theY, 0);
         positionBuffer.set(position);
-        updateAbsolutePosition();
         return me;
     }
 
@@ -34,6 +34,9 @@ import tech.lity.rea.skatolo.gui.Controller;
 import tech.lity.rea.skatolo.gui.controllers.Slider;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import processing.core.PApplet;
@@ -62,7 +65,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 
 	protected int _myHeight;
 
-	protected List<ListBoxItem> items;
+	protected ListBoxModel items;
 
 	protected List<Button> buttons;
 
@@ -78,6 +81,8 @@ public class DropdownList extends ControlGroup<DropdownList> {
 
 	private boolean bulkadding;
 
+	private boolean isTypeAhead = false;
+
 	/**
 	 * Convenience constructor to extend DropdownList.
 	 * 
@@ -93,7 +98,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	public DropdownList(Skatolo theskatolo, ControllerGroup<?> theGroup, String theName, int theX, int theY, int theW, int theH) {
 		super(theskatolo, theGroup, theName, theX, theY, theW, 9);
 
-		items = new ArrayList<ListBoxItem>();
+		items = new ListBoxModel();
 
 		buttons = new ArrayList<Button>();
 
@@ -155,7 +160,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 
 	public DropdownList showScrollbar() {
 		isScrollbarVisible = true;
-		if ((items.size()) * _myItemHeight > _myBackgroundHeight && isScrollbarVisible) {
+		if (items.getVisibleCount() * _myItemHeight > _myBackgroundHeight && isScrollbarVisible) {
 			_myScrollbar.show();
 		}
 		return this;
@@ -180,7 +185,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 * scroll the scrollList remotely. values must range between 0 and 1.
 	 */
 	public DropdownList scroll(float theValue) {
-		if ((items.size()) * _myItemHeight > _myBackgroundHeight) {
+		if (items.getVisibleCount() * _myItemHeight > _myBackgroundHeight) {
 			_myScrollbar.setValue(PApplet.abs(1 - PApplet.min(PApplet.max(0, theValue), 1)));
 		}
 		return this;
@@ -191,24 +196,35 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	}
 
 	public void scrolled(int theStep) {
-		float step = 1.0f / items.size();
+		// nothing to scroll when the filter matches no item.
+		if (items.getVisibleCount() == 0) {
+			return;
+		}
+		float step = 1.0f / items.getVisibleCount();
 		scroll((1 - getScrollPosition()) + (theStep * step));
 	}
 
 	protected void scroll() {
 		itemOffset = 0;
-		if (buttons.size() < items.size() && isScrollbarVisible) {
+		int count = items.getVisibleCount();
+		if (buttons.size() < count && isScrollbarVisible) {
 			_myScrollbar.show();
-			itemOffset = (int) Math.abs(_myScrollValue * (items.size() - buttons.size()));
+			itemOffset = (int) Math.abs(_myScrollValue * (count - buttons.size()));
 		} else {
 			_myScrollbar.hide();
 		}
 		if (!bulkadding) {
 			for (int i = 0; i < buttons.size(); i++) {
-				ListBoxItem item = items.get(itemOffset + i);
 				Button b = buttons.get(i);
+				// buttons without an item matching the filter are hidden.
+				if (itemOffset + i >= count) {
+					b.hide();
+					continue;
+				}
+				ListBoxItem item = items.getVisible(itemOffset + i);
+				b.show();
 				b.getCaptionLabel().toUpperCase(isToUpperCase);
-				b.setColor(item.getColor());
+				b.setColor(item.resolveColor());
 				b.getCaptionLabel().set(item.getText());
 				b._myValue = item.getValue();
 			}
@@ -249,9 +265,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 
 		if (n < pn) {
 			for (int i = buttons.size() - 1; i >= n; i--) {
-				skatolo.remove(skatolo.getController(buttons.get(i).getName()));
-				controllers.remove(buttons.get(i));
-				buttons.remove(i);
+				buttons.remove(i).remove();
 			}
 		} else if (pn < n) { // increase size of list
 			int nn = Math.min(n, items.size());
@@ -281,7 +295,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	private void updateScroll() {
 		_myScrollValue = _myScrollbar.getValue();
 		_myScrollbar.setValue(_myScrollValue);
-		if (buttons.size() < items.size() && isScrollbarVisible) {
+		if (buttons.size() < items.getVisibleCount() && isScrollbarVisible) {
 			_myScrollbar.show();
 		}
 		updateBackground();
@@ -289,10 +303,10 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	}
 
 	private void updateBackground() {
-		if (items.size() * (_myItemHeight + spacing) < _myOriginalBackgroundHeight) {
-			_myBackgroundHeight = items.size() * (_myItemHeight + spacing);
-		}
-		if (buttons.size() < items.size()) {
+		int count = items.getVisibleCount();
+		int rows = _myOriginalBackgroundHeight / (_myItemHeight + spacing);
+		_myBackgroundHeight = Math.min(rows, count) * (_myItemHeight + spacing);
+		if (buttons.size() < count) {
 			_myScrollbar.setHeight(_myBackgroundHeight - spacing);
 			_myScrollbar.show();
 		} else {
@@ -302,7 +316,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	}
 
 	private void updateButtonWidth() {
-		boolean b = (buttons.size() < items.size() && isScrollbarVisible);
+		boolean b = (buttons.size() < items.getVisibleCount() && isScrollbarVisible);
 		if (b) {
 			for (int i = 1; i < controllers.size(); i++) {
 				((Button) controllers.get(i)).width = _myWidth - _myScrollbarWidth - 1;
@@ -356,7 +370,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 
 	public void endItems() {
 		bulkadding = false;
-		scroll();
+		addListButton(items.size());
 	}
 
 	/**
@@ -369,7 +383,9 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	public ListBoxItem addItem(String theName, int theValue) {
 		ListBoxItem lbi = new ListBoxItem(this, theName, theValue);
 		items.add(lbi);
-		addListButton(1);
+		if (!bulkadding) {
+			addListButton(1);
+		}
 		return lbi;
 	}
 
@@ -391,7 +407,10 @@ public class DropdownList extends ControlGroup<DropdownList> {
 
 	public DropdownList addItems(List<?> theItems, int theOffset) {
 		for (int i = 0; i < theItems.size(); i++) {
-			addItem(theItems.get(i).toString(), i + theOffset);
+			items.add(new ListBoxItem(this, theItems.get(i).toString(), i + theOffset));
+		}
+		if (!bulkadding) {
+			addListButton(theItems.size());
 		}
 		return this;
 	}
@@ -404,22 +423,25 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 * @param theItemName String
 	 */
 	public DropdownList removeItem(String theItemName) {
-		try {
-			for (int i = items.size() - 1; i >= 0; i--) {
-				if ((items.get(i)).name.equals(theItemName)) {
-					items.remove(i);
-				}
-			}
-			if ((buttons.size()) > items.size()) {
-				String buttonName = ((Button) controllers.get(buttons.size())).getName();
-				buttons.remove(skatolo.getController(buttonName));
-				controllers.remove(skatolo.getController(buttonName));
-				skatolo.remove(buttonName);
+		if (items.indexOf(theItemName) >= 0) {
+			removeItems(Collections.singleton(theItemName));
+		}
+		return this;
+	}
 
+	/**
+	 * Removes all items with the given names, the list is only updated once.
+	 */
+	public DropdownList removeItems(String... theItemNames) {
+		return removeItems(Arrays.asList(theItemNames));
+	}
+
+	public DropdownList removeItems(Collection<String> theItemNames) {
+		if (items.removeItems(new HashSet<String>(theItemNames)) > 0) {
+			while (buttons.size() > items.size()) {
+				buttons.remove(buttons.size() - 1).remove();
 			}
 			updateScroll();
-		} catch (Exception e) {
-			Skatolo.logger().finer("ScrollList.removeItem exception:" + e);
 		}
 		return this;
 	}
@@ -435,18 +457,13 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	}
 
 	/**
-	 * TODO faulty returns a listBoxItem by name.
+	 * returns the last listBoxItem with the given name.
 	 * 
 	 * @param theItemName
 	 * @return
 	 */
 	public ListBoxItem getItem(String theItemName) {
-		for (int i = items.size() - 1; i >= 0; i--) {
-			if ((items.get(i)).name.equals(theItemName)) {
-				return items.get(i);
-			}
-		}
-		return null;
+		return items.get(theItemName);
 	}
 
 	/**
@@ -459,7 +476,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 		if (theButton instanceof Button) {
 			int n = buttons.indexOf(theButton);
 			if (n >= 0) {
-				return items.get(n + itemOffset);
+				return items.getVisible(n + itemOffset);
 			}
 		}
 		return null;
@@ -505,7 +522,7 @@ public class DropdownList extends ControlGroup<DropdownList> {
 		boolean b = (getWindow().getPointerX() > x && getWindow().getPointerX() < (x + _myWidth) && getWindow().getPointerY() > (y - getBarHeight()) && getWindow().getPointerY() < y
 				+ _myOriginalBackgroundHeight);
 		if (b && isOpen()) {
-			float step = (1.0f / (float) items.size());
+			float step = (1.0f / (float) Math.max(1, items.getVisibleCount()));
 			if (skatolo.isShiftDown()) {
 				step *= 10;
 			} else if (skatolo.isAltDown()) {
@@ -520,10 +537,70 @@ public class DropdownList extends ControlGroup<DropdownList> {
 					_myScrollbar.setValue(PApplet.constrain(_myScrollbar.getValue() - step, 0, 1));
 					break;
 				}
+				if (isTypeAhead) {
+					typeAhead(theEvent.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * with type-ahead enabled, typing while the pointer is over the open list filters the items,
+	 * backspace removes the last typed character and delete clears the filter.
+	 */
+	public DropdownList setTypeAhead(boolean theFlag) {
+		isTypeAhead = theFlag;
+		return this;
+	}
+
+
+	public boolean isTypeAhead() {
+		return isTypeAhead;
+	}
+
+
+	private void typeAhead(char theKey) {
+		String filter = items.getFilter();
+		if (theKey == PApplet.BACKSPACE) {
+			if (filter.length() > 0) {
+				setFilter(filter.substring(0, filter.length() - 1));
 			}
+		} else if (theKey == PApplet.DELETE) {
+			setFilter("");
+		} else if (theKey >= 32 && theKey != PApplet.CODED) {
+			setFilter(filter + theKey);
 		}
 	}
 
+
+	/**
+	 * shows only the items whose text contains theQuery (or starts with it, see setFilterMode),
+	 * ignoring case. Items and buttons are kept, an empty query shows all items again.
+	 */
+	public DropdownList setFilter(String theQuery) {
+		items.setFilter(theQuery);
+		_myScrollbar.setValue(1);
+		_myScrollValue = 0;
+		updateBackground();
+		scroll();
+		return this;
+	}
+
+
+	public String getFilter() {
+		return items.getFilter();
+	}
+
+
+	/**
+	 * sets how setFilter(String) matches items, ListBoxModel.SUBSTRING (the default) or
+	 * ListBoxModel.PREFIX.
+	 */
+	public DropdownList setFilterMode(int theMode) {
+		items.setFilterMode(theMode);
+		return setFilter(items.getFilter());
+	}
+
 	/**
 	 * Enables a ListBox to act as a pulldown menu. Alternatively use class PulldownMenu instead.
 	 */
@@ -539,15 +616,9 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 * Removes all items from a list box
 	 */
 	public DropdownList clear() {
-		for (int i = items.size() - 1; i >= 0; i--) {
-			items.remove(i);
-		}
 		items.clear();
-		for (int i = buttons.size() - 1; i >= 0; i--) {
-			String buttonName = ((Button) controllers.get(buttons.size())).getName();
-			buttons.remove(skatolo.getController(buttonName));
-			controllers.remove(skatolo.getController(buttonName));
-			skatolo.remove(buttonName);
+		while (!buttons.isEmpty()) {
+			buttons.remove(buttons.size() - 1).remove();
 		}
 		updateScroll();
 		_myBackgroundHeight = 0;
@@ -571,8 +642,8 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 */
 	@Override public DropdownList setColorActive(int theColor) {
 		super.setColorActive(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setActive(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setActive(theColor);
 		}
 		scroll();
 		return this;
@@ -583,8 +654,8 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 */
 	@Override public DropdownList setColorForeground(int theColor) {
 		super.setColorForeground(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setForeground(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setForeground(theColor);
 		}
 		scroll();
 		return this;
@@ -595,8 +666,8 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 */
 	@Override public DropdownList setColorBackground(int theColor) {
 		super.setColorBackground(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setBackground(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setBackground(theColor);
 		}
 		scroll();
 		return this;
@@ -607,8 +678,8 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 */
 	@Override public DropdownList setColorLabel(int theColor) {
 		super.setColorLabel(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setCaptionLabel(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setCaptionLabel(theColor);
 		}
 		scroll();
 		return this;
@@ -619,8 +690,8 @@ public class DropdownList extends ControlGroup<DropdownList> {
 	 */
 	@Override public DropdownList setColorValue(int theColor) {
 		super.setColorValue(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setValueLabel(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setValueLabel(theColor);
 		}
 		scroll();
 		return this;
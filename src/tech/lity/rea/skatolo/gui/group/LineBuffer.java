@@ -0,0 +1,133 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.group;
+
+/**
+ * A LineBuffer keeps the last lines of a text in a ring of fixed size, appending text never copies
+ * lines that are already stored and the oldest lines are dropped once the buffer is full. Used by a
+ * Textarea in console mode, see Textarea.setMaxLines(int).
+ * 
+ * @see skatolo.Textarea
+ */
+public class LineBuffer {
+
+	private final String[] lines;
+
+	private int head;
+
+	private int count;
+
+	// the last line, which has not been terminated by a linebreak yet.
+	private final StringBuilder partial = new StringBuilder();
+
+	private int modCount;
+
+	public LineBuffer(int theMaxLines) {
+		lines = new String[Math.max(1, theMaxLines)];
+	}
+
+	public int getMaxLines() {
+		return lines.length;
+	}
+
+	/**
+	 * appends a chunk of text, every linebreak inside the chunk terminates a line.
+	 */
+	public LineBuffer append(CharSequence theText) {
+		int start = 0;
+		for (int i = 0; i < theText.length(); i++) {
+			if (theText.charAt(i) == '\n') {
+				partial.append(theText, start, i);
+				push(partial.toString());
+				partial.setLength(0);
+				start = i + 1;
+			}
+		}
+		partial.append(theText, start, theText.length());
+		modCount++;
+		return this;
+	}
+
+	private void push(String theLine) {
+		if (count < lines.length) {
+			lines[(head + count++) % lines.length] = theLine;
+		} else {
+			lines[head] = theLine;
+			head = (head + 1) % lines.length;
+		}
+	}
+
+	public LineBuffer clear() {
+		head = 0;
+		count = 0;
+		partial.setLength(0);
+		modCount++;
+		return this;
+	}
+
+	/**
+	 * returns the number of lines including the last, unterminated line. The number never exceeds
+	 * getMaxLines().
+	 */
+	public int size() {
+		return partial.length() > 0 ? Math.min(count + 1, lines.length) : count;
+	}
+
+	/**
+	 * returns line theIndex, 0 being the oldest line inside the buffer.
+	 */
+	public CharSequence get(int theIndex) {
+		int skip = size() - (partial.length() > 0 ? count + 1 : count);
+		int i = theIndex - skip;
+		if (i == count) {
+			return partial;
+		}
+		return lines[(head + i) % lines.length];
+	}
+
+	/**
+	 * returns a counter which changes whenever the content of the buffer changes.
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * appends the lines from theStart (inclusive) to theEnd (exclusive) separated by linebreaks.
+	 */
+	public StringBuilder appendTo(StringBuilder theBuilder, int theStart, int theEnd) {
+		for (int i = theStart; i < theEnd; i++) {
+			if (i > theStart) {
+				theBuilder.append('\n');
+			}
+			theBuilder.append(get(i));
+		}
+		return theBuilder;
+	}
+
+	@Override public String toString() {
+		return appendTo(new StringBuilder(), 0, size()).toString();
+	}
+}
@@ -34,6 +34,9 @@ import tech.lity.rea.skatolo.gui.Controller;
 import tech.lity.rea.skatolo.gui.controllers.Slider;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import processing.core.PApplet;
@@ -65,7 +68,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 	protected int _myHeight;
 
-	protected List<ListBoxItem> items;
+	protected ListBoxModel items;
 
 	protected List<Button> buttons;
 
@@ -81,6 +84,8 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 	protected boolean bulkadding;
 
+	protected boolean isTypeAhead = false;
+
 
 	/**
 	 * Convenience constructor to extend ListBox.
@@ -98,7 +103,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	public ListBox(Skatolo theskatolo, ControllerGroup<?> theGroup, String theName, int theX, int theY, int theW, int theH) {
 		super(theskatolo, theGroup, theName, theX, theY, theW, 9);
 
-		items = new ArrayList<ListBoxItem>();
+		items = new ListBoxModel();
 
 		buttons = new ArrayList<Button>();
 
@@ -133,7 +138,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 	public ListBox showScrollbar() {
 		isScrollbarVisible = true;
-		if ((items.size()) * _myItemHeight > _myBackgroundHeight && isScrollbarVisible) {
+		if (items.getVisibleCount() * _myItemHeight > _myBackgroundHeight && isScrollbarVisible) {
 			_myScrollbar.show();
 		}
 		return this;
@@ -162,7 +167,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 * scroll the scrollList remotely. values must range between 0 and 1.
 	 */
 	public ListBox scroll(float theValue) {
-		if ((items.size()) * _myItemHeight > _myBackgroundHeight) {
+		if (items.getVisibleCount() * _myItemHeight > _myBackgroundHeight) {
 			_myScrollbar.setValue(PApplet.abs(1 - PApplet.min(PApplet.max(0, theValue), 1)));
 		}
 		return this;
@@ -175,26 +180,37 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 
 	public void scrolled(int theStep) {
-		float step = 1.0f / items.size();
+		// nothing to scroll when the filter matches no item.
+		if (items.getVisibleCount() == 0) {
+			return;
+		}
+		float step = 1.0f / items.getVisibleCount();
 		scroll((1 - getScrollPosition()) + (theStep * step));
 	}
 
 
 	protected void scroll() {
 		itemOffset = 0;
-		if (buttons.size() < items.size() && isScrollbarVisible) {
+		int count = items.getVisibleCount();
+		if (buttons.size() < count && isScrollbarVisible) {
 			_myScrollbar.show();
-			itemOffset = (int) Math.abs(_myScrollValue * (items.size() - buttons.size()));
+			itemOffset = (int) Math.abs(_myScrollValue * (count - buttons.size()));
 		}
 		else {
 			_myScrollbar.hide();
 		}
 		if (!bulkadding) {
 			for (int i = 0; i < buttons.size(); i++) {
-				ListBoxItem item = items.get(itemOffset + i);
 				Button b = buttons.get(i);
+				// buttons without an item matching the filter are hidden.
+				if (itemOffset + i >= count) {
+					b.hide();
+					continue;
+				}
+				ListBoxItem item = items.getVisible(itemOffset + i);
+				b.show();
 				b.getCaptionLabel().toUpperCase(isToUpperCase);
-				b.setColor(item.getColor());
+				b.setColor(item.resolveColor());
 				b.getCaptionLabel().set(item.getText());
 				b._myValue = item.getValue();
 			}
@@ -239,9 +255,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 		if (n < pn) {
 			for (int i = buttons.size() - 1; i >= n; i--) {
-				skatolo.remove(skatolo.getController(buttons.get(i).getName()));
-				controllers.remove(buttons.get(i));
-				buttons.remove(i);
+				buttons.remove(i).remove();
 			}
 		}
 		else if (pn < n) { // increase size of list
@@ -273,7 +287,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	protected void updateScroll() {
 		_myScrollValue = _myScrollbar.getValue();
 		_myScrollbar.setValue(_myScrollValue);
-		if (buttons.size() < items.size() && isScrollbarVisible) {
+		if (buttons.size() < items.getVisibleCount() && isScrollbarVisible) {
 			_myScrollbar.show();
 		}
 		updateBackground();
@@ -282,10 +296,10 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 
 	protected void updateBackground() {
-		if (items.size() * (_myItemHeight + spacing) < _myOriginalBackgroundHeight) {
-			_myBackgroundHeight = items.size() * (_myItemHeight + spacing);
-		}
-		if (buttons.size() < items.size()) {
+		int count = items.getVisibleCount();
+		int rows = _myOriginalBackgroundHeight / (_myItemHeight + spacing);
+		_myBackgroundHeight = Math.min(rows, count) * (_myItemHeight + spacing);
+		if (buttons.size() < count) {
 			_myScrollbar.setHeight(_myBackgroundHeight - spacing);
 			_myScrollbar.show();
 		}
@@ -297,7 +311,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 
 	protected void updateButtonWidth() {
-		boolean b = (buttons.size() < items.size() && isScrollbarVisible);
+		boolean b = (buttons.size() < items.getVisibleCount() && isScrollbarVisible);
 		if (b) {
 			for (int i = 1; i < controllers.size(); i++) {
 				((Button) controllers.get(i)).width = _myWidth - _myScrollbarWidth - 1;
@@ -357,7 +371,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 	public void endItems() {
 		bulkadding = false;
-		scroll();
+		addListButton(items.size());
 	}
 
 
@@ -371,7 +385,9 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	public ListBoxItem addItem(String theName, int theValue) {
 		ListBoxItem lbi = new ListBoxItem(this, theName, theValue);
 		items.add(lbi);
-		addListButton(1);
+		if (!bulkadding) {
+			addListButton(1);
+		}
 		return lbi;
 	}
 
@@ -396,7 +412,10 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 	public ListBox addItems(List<?> theItems, int theOffset) {
 		for (int i = 0; i < theItems.size(); i++) {
-			addItem(theItems.get(i).toString(), i + theOffset);
+			items.add(new ListBoxItem(this, theItems.get(i).toString(), i + theOffset));
+		}
+		if (!bulkadding) {
+			addListButton(theItems.size());
 		}
 		return this;
 	}
@@ -410,22 +429,27 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 * @param theItemName String
 	 */
 	public ListBox removeItem(String theItemName) {
-		try {
-			for (int i = items.size() - 1; i >= 0; i--) {
-				if ((items.get(i)).name.equals(theItemName)) {
-					items.remove(i);
-				}
-			}
-			if ((buttons.size()) > items.size()) {
-				String buttonName = ((Button) controllers.get(buttons.size())).getName();
-				buttons.remove(skatolo.getController(buttonName));
-				controllers.remove(skatolo.getController(buttonName));
-				skatolo.remove(buttonName);
+		if (items.indexOf(theItemName) >= 0) {
+			removeItems(Collections.singleton(theItemName));
+		}
+		return this;
+	}
 
+
+	/**
+	 * Removes all items with the given names, the list is only updated once.
+	 */
+	public ListBox removeItems(String... theItemNames) {
+		return removeItems(Arrays.asList(theItemNames));
+	}
+
+
+	public ListBox removeItems(Collection<String> theItemNames) {
+		if (items.removeItems(new HashSet<String>(theItemNames)) > 0) {
+			while (buttons.size() > items.size()) {
+				buttons.remove(buttons.size() - 1).remove();
 			}
 			updateScroll();
-		} catch (Exception e) {
-			Skatolo.logger().finer("ScrollList.removeItem exception:" + e);
 		}
 		return this;
 	}
@@ -443,18 +467,13 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 
 
 	/**
-	 * TODO faulty returns a listBoxItem by name.
+	 * returns the last listBoxItem with the given name.
 	 * 
 	 * @param theItemName
 	 * @return
 	 */
 	public ListBoxItem getItem(String theItemName) {
-		for (int i = items.size() - 1; i >= 0; i--) {
-			if ((items.get(i)).name.equals(theItemName)) {
-				return items.get(i);
-			}
-		}
-		return null;
+		return items.get(theItemName);
 	}
 
 
@@ -468,7 +487,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 		if (theButton instanceof Button) {
 			int n = buttons.indexOf(theButton);
 			if (n >= 0) {
-				return items.get(n + itemOffset);
+				return items.getVisible(n + itemOffset);
 			}
 		}
 		return null;
@@ -526,7 +545,7 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 		float y = getAbsolutePosition().y;
 		boolean b = (getWindow().getPointerX() > x && getWindow().getPointerX() < (x + _myWidth) && getWindow().getPointerY() > (y - getBarHeight()) && getWindow().getPointerY() < y + _myOriginalBackgroundHeight);
 		if (b && isOpen()) {
-			float step = (1.0f / (float) items.size());
+			float step = (1.0f / (float) Math.max(1, items.getVisibleCount()));
 			if (skatolo.isShiftDown()) {
 				step *= 10;
 			}
@@ -542,8 +561,76 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 					_myScrollbar.setValue(PApplet.constrain(_myScrollbar.getValue() - step, 0, 1));
 					break;
 				}
+				if (isTypeAhead) {
+					typeAhead(theEvent.getKey());
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * with type-ahead enabled, typing while the pointer is over the open list filters the items,
+	 * backspace removes the last typed character and delete clears the filter.
+	 */
+	public ListBox setTypeAhead(boolean theFlag) {
+		isTypeAhead = theFlag;
+		return this;
+	}
+
+
+
+	public boolean isTypeAhead() {
+		return isTypeAhead;
+	}
+
+
+
+	protected void typeAhead(char theKey) {
+		String filter = items.getFilter();
+		if (theKey == PApplet.BACKSPACE) {
+			if (filter.length() > 0) {
+				setFilter(filter.substring(0, filter.length() - 1));
 			}
 		}
+		else if (theKey == PApplet.DELETE) {
+			setFilter("");
+		}
+		else if (theKey >= 32 && theKey != PApplet.CODED) {
+			setFilter(filter + theKey);
+		}
+	}
+
+
+
+	/**
+	 * shows only the items whose text contains theQuery (or starts with it, see setFilterMode),
+	 * ignoring case. Items and buttons are kept, an empty query shows all items again.
+	 */
+	public ListBox setFilter(String theQuery) {
+		items.setFilter(theQuery);
+		_myScrollbar.setValue(1);
+		_myScrollValue = 0;
+		updateBackground();
+		scroll();
+		return this;
+	}
+
+
+
+	public String getFilter() {
+		return items.getFilter();
+	}
+
+
+
+	/**
+	 * sets how setFilter(String) matches items, ListBoxModel.SUBSTRING (the default) or
+	 * ListBoxModel.PREFIX.
+	 */
+	public ListBox setFilterMode(int theMode) {
+		items.setFilterMode(theMode);
+		return setFilter(items.getFilter());
 	}
 
 
@@ -563,15 +650,9 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 * Removes all items from a list box
 	 */
 	public ListBox clear() {
-		for (int i = items.size() - 1; i >= 0; i--) {
-			items.remove(i);
-		}
 		items.clear();
-		for (int i = buttons.size() - 1; i >= 0; i--) {
-			String buttonName = ((Button) controllers.get(buttons.size())).getName();
-			buttons.remove(skatolo.getController(buttonName));
-			controllers.remove(skatolo.getController(buttonName));
-			skatolo.remove(buttonName);
+		while (!buttons.isEmpty()) {
+			buttons.remove(buttons.size() - 1).remove();
 		}
 		updateScroll();
 		_myBackgroundHeight = 0;
@@ -597,8 +678,8 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 */
 	@Override public ListBox setColorActive(int theColor) {
 		super.setColorActive(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setActive(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setActive(theColor);
 		}
 		scroll();
 		return this;
@@ -610,8 +691,8 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 */
 	@Override public ListBox setColorForeground(int theColor) {
 		super.setColorForeground(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setForeground(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setForeground(theColor);
 		}
 		scroll();
 		return this;
@@ -623,8 +704,8 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 */
 	@Override public ListBox setColorBackground(int theColor) {
 		super.setColorBackground(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setBackground(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setBackground(theColor);
 		}
 		scroll();
 		return this;
@@ -636,8 +717,8 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 */
 	@Override public ListBox setColorLabel(int theColor) {
 		super.setColorLabel(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setCaptionLabel(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setCaptionLabel(theColor);
 		}
 		scroll();
 		return this;
@@ -649,8 +730,8 @@ public class ListBox extends ControlGroup<ListBox> implements ControlListener {
 	 */
 	@Override public ListBox setColorValue(int theColor) {
 		super.setColorValue(theColor);
-		for (int i = 0; i < items.size(); i++) {
-			(items.get(i)).getColor().setValueLabel(theColor);
+		for (ListBoxItem item : items.getStyledItems()) {
+			item.getColor().setValueLabel(theColor);
 		}
 		scroll();
 		return this;
@@ -41,8 +41,11 @@ public class ListBoxItem {
 
 	protected boolean isActive;
 
+	// null until one of the setColor methods is called, the item is drawn with the color of the list until then.
 	protected CColor color;
 
+	protected ListBoxModel model;
+
 	protected int id = -1;
 
 	protected ControlGroup<?> parent;
@@ -54,35 +57,60 @@ public class ListBoxItem {
 		text = theName;
 		value = theValue;
 		parent = theListBox;
-		color = new CColor(theListBox.getColor());
 	}
 
+	/**
+	 * returns the color of the item. An item which has not been given its own color with one of the
+	 * setColor methods is drawn with the color of the list and returns a copy of it, changing the
+	 * copy does not change the item.
+	 */
 	public CColor getColor() {
+		return color == null ? new CColor(parent.getColor()) : color;
+	}
+
+	/**
+	 * returns the own color of the item, the color of the list is copied to the item when it is
+	 * styled for the first time.
+	 */
+	private CColor style() {
+		if (color == null) {
+			color = new CColor(parent.getColor());
+			if (model != null) {
+				model.styled.add(this);
+			}
+		}
 		return color;
 	}
 
+	/**
+	 * returns the color the item is drawn with without copying the color of the list.
+	 */
+	protected CColor resolveColor() {
+		return color == null ? parent.getColor() : color;
+	}
+
 	public void setColor(CColor theColor) {
-		color.set(theColor);
+		style().set(theColor);
 		updateListBoxItems();
 	}
 
 	public void setColorActive(int theColor) {
-		color.setActive(theColor);
+		style().setActive(theColor);
 		updateListBoxItems();
 	}
 
 	public void setColorForeground(int theColor) {
-		color.setForeground(theColor);
+		style().setForeground(theColor);
 		updateListBoxItems();
 	}
 
 	public void setColorBackground(int theColor) {
-		color.setBackground(theColor);
+		style().setBackground(theColor);
 		updateListBoxItems();
 	}
 
 	public void setColorLabel(int theColor) {
-		color.setCaptionLabel(theColor);
+		style().setCaptionLabel(theColor);
 		updateListBoxItems();
 	}
 
@@ -111,6 +139,9 @@ public class ListBoxItem {
 	 */
 	public ListBoxItem setText(String theText) {
 		text = theText;
+		if (model != null) {
+			model.changed();
+		}
 		updateListBoxItems();
 		return this;
 	}
@@ -155,7 +186,7 @@ public class ListBoxItem {
 	 * {@inheritDoc}
 	 */
 	public String toString() {
-		return "\ntype:\t" + this.getClass() + "\nname:\t" + name + "\n" + "label:\t" + text + "\n" + "id:\t" + id + "\n" + "value:\t" + value + "\n" + "color:\t" + getColor()
+		return "\ntype:\t" + this.getClass() + "\nname:\t" + name + "\n" + "label:\t" + text + "\n" + "id:\t" + id + "\n" + "value:\t" + value + "\n" + "color:\t" + resolveColor()
 				+ "\n";
 	}
 
@@ -0,0 +1,510 @@
+/* 
+ *  skatolo is a processing gui library.
+ * 
+ * Copyright (C)  2017 by RealityTechSASU
+ * Copyright (C)  2015-2016 by Jeremy Laviole
+ * Copyright (C)  2006-2012 by Andreas Schlegel
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * 
+ * 
+ */
+package tech.lity.rea.skatolo.gui.group;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Used by ListBox and DropdownList, a ListBoxModel stores the items of a list together with an
+ * index from item name to position, so that items can be looked up and removed by name without
+ * scanning the list. Items only get their own CColor once one of the setColor methods of
+ * ListBoxItem is called, all other items are drawn with the color of the list, so changing the
+ * color of a list only touches the items which have been styled individually. All methods of List
+ * which change the model, including those of its iterators and sub lists, keep the index and the
+ * styled items up to date.
+ * 
+ * A filter restricts the items shown by a list to those whose text starts with (PREFIX) or
+ * contains (SUBSTRING) a query, ignoring case. Prefix queries are answered from a sorted index of
+ * the item texts, a substring query which extends the previous query only searches the items which
+ * matched before, so typing narrows the list without rebuilding it.
+ * 
+ * @see skatolo.ListBox
+ * @see skatolo.DropdownList
+ */
+@SuppressWarnings("serial") public class ListBoxModel extends ArrayList<ListBoxItem> {
+
+	// maps the name of an item to its index, the last item wins if names are used more than once.
+	private final HashMap<String, Integer> index = new HashMap<String, Integer>();
+
+	// true when items have been removed or inserted and the index needs to be rebuilt.
+	private boolean isIndexDirty;
+
+	protected final Set<ListBoxItem> styled = new HashSet<ListBoxItem>();
+
+	public final static int PREFIX = 0;
+
+	public final static int SUBSTRING = 1;
+
+	private int filterMode = SUBSTRING;
+
+	private String filter = "";
+
+	// the lower case text of each item and the item indices sorted by it, null when outdated.
+	private String[] keys;
+
+	private int[] order;
+
+	// indices of the items matching the filter, null while no filter is set.
+	private int[] visible;
+
+	private int visibleCount;
+
+	private boolean isFilterDirty;
+
+	// the List view used by subList(int, int), see list().
+	private transient List<ListBoxItem> list;
+
+
+	/**
+	 * returns the index of the last item with the given name or -1.
+	 */
+	public int indexOf(String theName) {
+		if (isIndexDirty) {
+			index.clear();
+			for (int i = 0; i < size(); i++) {
+				index.put(get(i).name, i);
+			}
+			isIndexDirty = false;
+		}
+		Integer i = index.get(theName);
+		return i == null ? -1 : i;
+	}
+
+
+	/**
+	 * returns the last item with the given name or null.
+	 */
+	public ListBoxItem get(String theName) {
+		int i = indexOf(theName);
+		return i < 0 ? null : get(i);
+	}
+
+
+	/**
+	 * removes all items whose name is contained in theNames with a single pass over the list and
+	 * returns the number of removed items.
+	 */
+	public int removeItems(Set<String> theNames) {
+		int n = 0;
+		for (int i = 0; i < size(); i++) {
+			ListBoxItem item = get(i);
+			if (theNames.contains(item.name)) {
+				unlink(item);
+			} else {
+				super.set(n++, item);
+			}
+		}
+		int removed = size() - n;
+		if (removed > 0) {
+			super.removeRange(n, size());
+			isIndexDirty = true;
+			changed();
+		}
+		return removed;
+	}
+
+
+	/**
+	 * returns the items which have their own color.
+	 */
+	public Set<ListBoxItem> getStyledItems() {
+		return styled;
+	}
+
+
+	/**
+	 * shows only the items matching theQuery, an empty query shows all items.
+	 */
+	public ListBoxModel setFilter(String theQuery) {
+		String query = (theQuery == null) ? "" : theQuery.toLowerCase();
+		if (query.equals(filter) && !isFilterDirty) {
+			return this;
+		}
+		boolean narrow = !isFilterDirty && visible != null && query.contains(filter);
+		filter = query;
+		applyFilter(narrow);
+		return this;
+	}
+
+
+	public String getFilter() {
+		return filter;
+	}
+
+
+	/**
+	 * sets how the filter matches the text of an item, PREFIX or SUBSTRING (the default).
+	 */
+	public ListBoxModel setFilterMode(int theMode) {
+		filterMode = theMode;
+		isFilterDirty = true;
+		return this;
+	}
+
+
+	public int getFilterMode() {
+		return filterMode;
+	}
+
+
+	public boolean isFiltered() {
+		return !filter.isEmpty();
+	}
+
+
+	/**
+	 * returns the number of items matching the filter.
+	 */
+	public int getVisibleCount() {
+		if (isFilterDirty) {
+			applyFilter(false);
+		}
+		return visible == null ? size() : visibleCount;
+	}
+
+
+	/**
+	 * returns the item at theIndex among the items matching the filter.
+	 */
+	public ListBoxItem getVisible(int theIndex) {
+		if (isFilterDirty) {
+			applyFilter(false);
+		}
+		return get(visible == null ? theIndex : visible[theIndex]);
+	}
+
+
+	private void applyFilter(boolean theNarrowFlag) {
+		isFilterDirty = false;
+		if (filter.isEmpty()) {
+			visible = null;
+			return;
+		}
+		updateKeys();
+		if (filterMode == PREFIX) {
+			// all keys starting with the filter follow each other in the sorted index.
+			int lo = 0;
+			int hi = order.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (keys[order[mid]].compareTo(filter) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			int n = 0;
+			visible = new int[16];
+			for (int i = lo; i < order.length && keys[order[i]].startsWith(filter); i++) {
+				if (n == visible.length) {
+					visible = Arrays.copyOf(visible, n * 2);
+				}
+				visible[n++] = order[i];
+			}
+			Arrays.sort(visible, 0, n);
+			visibleCount = n;
+		} else if (theNarrowFlag) {
+			int n = 0;
+			for (int i = 0; i < visibleCount; i++) {
+				if (keys[visible[i]].contains(filter)) {
+					visible[n++] = visible[i];
+				}
+			}
+			visibleCount = n;
+		} else {
+			int n = 0;
+			visible = new int[size()];
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i].contains(filter)) {
+					visible[n++] = i;
+				}
+			}
+			visibleCount = n;
+		}
+	}
+
+
+	private void updateKeys() {
+		if (keys == null) {
+			keys = new String[size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = get(i).getText().toLowerCase();
+			}
+			order = null;
+		}
+		if (order == null && filterMode == PREFIX) {
+			order = new int[keys.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			sort(order, new int[order.length], 0, order.length);
+		}
+	}
+
+
+	/**
+	 * sorts the item indices from theFrom to theTo by their keys, a merge sort on ints which does not
+	 * box the indices.
+	 */
+	private void sort(int[] theOrder, int[] theTemp, int theFrom, int theTo) {
+		if (theTo - theFrom < 2) {
+			return;
+		}
+		int mid = (theFrom + theTo) >>> 1;
+		sort(theOrder, theTemp, theFrom, mid);
+		sort(theOrder, theTemp, mid, theTo);
+		if (keys[theOrder[mid - 1]].compareTo(keys[theOrder[mid]]) <= 0) {
+			return;
+		}
+		System.arraycopy(theOrder, theFrom, theTemp, theFrom, theTo - theFrom);
+		for (int i = theFrom, a = theFrom, b = mid; i < theTo; i++) {
+			if (b == theTo || (a < mid && keys[theTemp[a]].compareTo(keys[theTemp[b]]) <= 0)) {
+				theOrder[i] = theTemp[a++];
+			} else {
+				theOrder[i] = theTemp[b++];
+			}
+		}
+	}
+
+
+	/**
+	 * called when items or their texts change, the filter is applied again when it is used next.
+	 */
+	protected void changed() {
+		keys = null;
+		order = null;
+		isFilterDirty = true;
+	}
+
+
+	private void link(ListBoxItem theItem) {
+		theItem.model = this;
+		if (theItem.color != null) {
+			styled.add(theItem);
+		}
+	}
+
+
+	private void unlink(ListBoxItem theItem) {
+		theItem.model = null;
+		styled.remove(theItem);
+	}
+
+
+	@Override public boolean add(ListBoxItem theItem) {
+		link(theItem);
+		super.add(theItem);
+		if (!isIndexDirty) {
+			index.put(theItem.name, size() - 1);
+		}
+		changed();
+		return true;
+	}
+
+
+	@Override public void add(int theIndex, ListBoxItem theItem) {
+		link(theItem);
+		super.add(theIndex, theItem);
+		isIndexDirty = true;
+		changed();
+	}
+
+
+	@Override public boolean addAll(Collection<? extends ListBoxItem> theItems) {
+		for (ListBoxItem item : theItems) {
+			add(item);
+		}
+		return !theItems.isEmpty();
+	}
+
+
+	@Override public ListBoxItem set(int theIndex, ListBoxItem theItem) {
+		ListBoxItem previous = super.set(theIndex, theItem);
+		// unlinks first, theItem may be the item it replaces.
+		unlink(previous);
+		link(theItem);
+		isIndexDirty = true;
+		changed();
+		return previous;
+	}
+
+
+	@Override public ListBoxItem remove(int theIndex) {
+		ListBoxItem item = super.remove(theIndex);
+		unlink(item);
+		isIndexDirty = true;
+		changed();
+		return item;
+	}
+
+
+	@Override public boolean remove(Object theItem) {
+		int i = indexOf(theItem);
+		if (i < 0) {
+			return false;
+		}
+		remove(i);
+		return true;
+	}
+
+
+	@Override public boolean addAll(int theIndex, Collection<? extends ListBoxItem> theItems) {
+		for (ListBoxItem item : theItems) {
+			link(item);
+		}
+		boolean added = super.addAll(theIndex, theItems);
+		isIndexDirty = true;
+		changed();
+		return added;
+	}
+
+
+	@Override protected void removeRange(int theFrom, int theTo) {
+		for (int i = theFrom; i < theTo; i++) {
+			unlink(get(i));
+		}
+		super.removeRange(theFrom, theTo);
+		isIndexDirty = true;
+		changed();
+	}
+
+
+	@Override public boolean removeIf(final Predicate<? super ListBoxItem> theFilter) {
+		boolean removed = super.removeIf(new Predicate<ListBoxItem>() {
+
+			public boolean test(ListBoxItem theItem) {
+				if (theFilter.test(theItem)) {
+					unlink(theItem);
+					return true;
+				}
+				return false;
+			}
+		});
+		if (removed) {
+			isIndexDirty = true;
+			changed();
+		}
+		return removed;
+	}
+
+
+	@Override public boolean removeAll(final Collection<?> theItems) {
+		return removeIf(new Predicate<ListBoxItem>() {
+
+			public boolean test(ListBoxItem theItem) {
+				return theItems.contains(theItem);
+			}
+		});
+	}
+
+
+	@Override public boolean retainAll(final Collection<?> theItems) {
+		return removeIf(new Predicate<ListBoxItem>() {
+
+			public boolean test(ListBoxItem theItem) {
+				return !theItems.contains(theItem);
+			}
+		});
+	}
+
+
+	@Override public void replaceAll(UnaryOperator<ListBoxItem> theOperator) {
+		for (int i = 0; i < size(); i++) {
+			set(i, theOperator.apply(get(i)));
+		}
+	}
+
+
+	@Override public void sort(Comparator<? super ListBoxItem> theComparator) {
+		super.sort(theComparator);
+		isIndexDirty = true;
+		changed();
+	}
+
+
+	/**
+	 * the sub list is a view of the model which changes the model through the methods above.
+	 */
+	@Override public List<ListBoxItem> subList(int theFrom, int theTo) {
+		if (list == null) {
+			list = new AbstractList<ListBoxItem>() {
+
+				@Override public ListBoxItem get(int theIndex) {
+					return ListBoxModel.this.get(theIndex);
+				}
+
+
+				@Override public int size() {
+					return ListBoxModel.this.size();
+				}
+
+
+				@Override public ListBoxItem set(int theIndex, ListBoxItem theItem) {
+					return ListBoxModel.this.set(theIndex, theItem);
+				}
+
+
+				@Override public void add(int theIndex, ListBoxItem theItem) {
+					ListBoxModel.this.add(theIndex, theItem);
+				}
+
+
+				@Override public ListBoxItem remove(int theIndex) {
+					return ListBoxModel.this.remove(theIndex);
+				}
+
+
+				@Override protected void removeRange(int theFrom, int theTo) {
+					ListBoxModel.this.removeRange(theFrom, theTo);
+				}
+			};
+		}
+		return list.subList(theFrom, theTo);
+	}
+
+
+	@Override public void clear() {
+		for (Iterator<ListBoxItem> it = iterator(); it.hasNext();) {
+			it.next().model = null;
+		}
+		super.clear();
+		styled.clear();
+		index.clear();
+		isIndexDirty = false;
+		changed();
+	}
+
+}
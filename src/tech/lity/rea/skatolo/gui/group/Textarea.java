@@ -24,15 +24,12 @@
  */
 package tech.lity.rea.skatolo.gui.group;
 
-import tech.lity.rea.skatolo.Hacks;
 import tech.lity.rea.skatolo.events.ControlEvent;
 import tech.lity.rea.skatolo.ControlFont;
 import tech.lity.rea.skatolo.events.ControlListener;
 import tech.lity.rea.skatolo.Skatolo;
 import tech.lity.rea.skatolo.gui.Label;
 import tech.lity.rea.skatolo.gui.controllers.Slider;
-import java.util.Arrays;
-import java.util.List;
 
 import processing.core.PApplet;
 import processing.core.PFont;
@@ -63,6 +60,16 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 
 	private int _myScrollbarWidth = 5;
 
+	// backing model of a Textarea in console mode, only the lines inside the
+	// visible window are passed on to the value label.
+	protected LineBuffer _myLines;
+
+	private int _myLinesModCount = -1;
+
+	private int _myFirstVisibleLine = -1;
+
+	private final StringBuilder _myWindow = new StringBuilder();
+
 	/**
 	 * Convenience constructor to extend Textarea.
 	 * 
@@ -144,6 +151,65 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 		scroll();
 	}
 
+	/**
+	 * turns the textarea into a console which keeps only the last theMaxLines lines of its text.
+	 * Text added with append(String) is stored line by line inside a ring buffer and only the lines
+	 * currently visible are rendered. use -1 to store the text as a whole again.
+	 * 
+	 * The visible window is measured in lines of the buffer, a line which is wider than the
+	 * textarea and wraps takes more than one row, the rows below the area are then cut off. Use a
+	 * width wide enough for the lines or break long lines before appending them.
+	 * 
+	 * @param theMaxLines int
+	 * @return Textarea
+	 */
+	public Textarea setMaxLines(int theMaxLines) {
+		String text = getText();
+		if (theMaxLines < 0) {
+			_myLines = null;
+			return setText(text);
+		}
+		_myLines = new LineBuffer(theMaxLines);
+		_myLines.append(text);
+		_myLinesModCount = -1;
+		return this;
+	}
+
+	public int getMaxLines() {
+		return _myLines == null ? -1 : _myLines.getMaxLines();
+	}
+
+	/**
+	 * returns the number of rows of the area, wrapped lines are not taken into account.
+	 */
+	private int getVisibleLines() {
+		return PApplet.max(1, _myHeight / PApplet.max(1, _myValueLabel.getLineHeight()));
+	}
+
+	private boolean isOverflow() {
+		if (_myLines != null) {
+			return _myLines.size() > getVisibleLines();
+		}
+		return _myValueLabel.getOverflow() > 1;
+	}
+
+	/**
+	 * passes the lines inside the visible window of the line buffer on to the value label, the
+	 * window follows the position of the scrollbar.
+	 */
+	private void updateWindow() {
+		int visible = getVisibleLines();
+		int first = PApplet.round(PApplet.max(0, _myLines.size() - visible) * PApplet.abs(_myScrollValue));
+		if (first == _myFirstVisibleLine && _myLines.getModCount() == _myLinesModCount) {
+			return;
+		}
+		_myFirstVisibleLine = first;
+		_myLinesModCount = _myLines.getModCount();
+		_myWindow.setLength(0);
+		_myLines.appendTo(_myWindow, first, PApplet.min(_myLines.size(), first + visible));
+		_myValueLabel.set(_myWindow.toString());
+	}
+
 	public Textarea hideScrollbar() {
 		isScrollbarVisible = false;
 		_myScrollbar.hide();
@@ -152,7 +218,7 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 
 	public Textarea showScrollbar() {
 		isScrollbarVisible = true;
-		boolean isScrollbar = _myHeight < (_myValueLabel.getTextHeight() + _myValueLabel.getLineHeight());
+		boolean isScrollbar = (_myLines != null) ? isOverflow() : _myHeight < (_myValueLabel.getTextHeight() + _myValueLabel.getLineHeight());
 		if (isScrollbar) {
 			_myScrollbar.show();
 		}
@@ -197,18 +263,19 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 
 		float myLen = _myValueLabel.getTextHeight() + _myValueLabel.getLineHeight();
 		float myOffset = 0;
-		boolean isScrollbar = _myHeight < myLen;
+		boolean isScrollbar = (_myLines != null) ? isOverflow() : _myHeight < myLen;
 		if (isScrollbar) {
 			myOffset = _myScrollValue * (myLen - _myHeight + _myBottomOffset);
 		}
 		isScrollbar = (isScrollbarVisible) ? isScrollbar : false;
 		_myScrollbar.setVisible(isScrollbar);
-		_myValueLabel.setOffsetYratio(_myScrollValue);
+		// the window of a line buffer is already scrolled by updateWindow().
+		_myValueLabel.setOffsetYratio((_myLines != null) ? 0 : _myScrollValue);
 	}
 
 	public void scrolled(int theStep) {
 		if (_myScrollbar.isVisible()) {
-			int lines = (_myValueLabel.getTextHeight() / _myValueLabel.getLineHeight());
+			int lines = (_myLines != null) ? _myLines.size() : (_myValueLabel.getTextHeight() / _myValueLabel.getLineHeight());
 			float step = 1.0f / lines;
 			scroll((1 - getScrollPosition()) + (theStep * step));
 		}
@@ -285,6 +352,10 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 	 * @param theText String
 	 */
 	public Textarea setText(String theText) {
+		if (_myLines != null) {
+			_myLines.clear().append(theText);
+			return this;
+		}
 		_myValueLabel.set(theText);
 		_myScrollValue = (float) (_myHeight) / (float) (_myValueLabel.getTextHeight());
 		_myScrollbar
@@ -297,18 +368,27 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 	}
 
 	public Textarea append(String theText) {
+		if (_myLines != null) {
+			_myLines.append(theText);
+			return this;
+		}
 		return setText(getText() + theText);
 	}
 
+	/**
+	 * appends text and keeps only the last max lines, see setMaxLines(int).
+	 * 
+	 * @param theText String
+	 * @param max int
+	 * @return Textarea
+	 */
 	public Textarea append(String theText, int max) {
-		String str = getText() + theText;
-
-		if (max == -1) {
-			return setText(str);
+		// compares with the number of lines the buffer keeps, at least one.
+		int lines = (max < 0) ? -1 : Math.max(1, max);
+		if (lines != getMaxLines()) {
+			setMaxLines(lines);
 		}
-
-		List<String> strs = Arrays.asList(str.split("\n"));
-		return setText(Hacks.join(strs.subList(Math.max(0, strs.size() - max), strs.size()), "\n"));
+		return append(theText);
 	}
 
 	/**
@@ -321,8 +401,11 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 	}
 
 	@Override protected void preDraw(PGraphics graphics) {
+		if (_myLines != null) {
+			updateWindow();
+		}
 		if (isScrollbarVisible) {
-			_myScrollbar.setVisible(_myValueLabel.getOverflow() > 1);
+			_myScrollbar.setVisible(isOverflow());
 		}
 		if (_myScrollbar.isVisible() || isColorBackground) {
 			_myScrollbar.getPosition().x = _myWidth - _myScrollbarWidth + _myValueLabel.getStyle().paddingLeft
@@ -350,7 +433,7 @@ public class Textarea extends ControllerGroup<Textarea> implements ControlListen
 	}
 
 	public String getStringValue() {
-		return _myValueLabel.getText();
+		return (_myLines != null) ? _myLines.toString() : _myValueLabel.getText();
 	}
 
 	public Textarea setFont(ControlFont theFont) {
@@ -27,25 +27,51 @@ package tech.lity.rea.skatolo.gui.layout;
 import tech.lity.rea.skatolo.Skatolo;
 import tech.lity.rea.skatolo.gui.ControllerInterface;
 import tech.lity.rea.skatolo.gui.CColor;
+import tech.lity.rea.skatolo.gui.Controller;
 import tech.lity.rea.skatolo.gui.group.ColorPicker;
+import tech.lity.rea.skatolo.gui.group.ControllerGroup;
 import tech.lity.rea.skatolo.gui.group.ListBox;
 import tech.lity.rea.skatolo.gui.group.RadioButton;
 import tech.lity.rea.skatolo.gui.group.DropdownList;
+import tech.lity.rea.skatolo.gui.group.Tab;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import processing.core.PVector;
 
+/**
+ * A controller layout saves the position, size, tab or group, visibility
+ * and colors of all controllers in a compact binary file. A layout is
+ * applied in one batch: parents are set first, then the attributes of each
+ * controller which differ from the layout, and the absolute positions of the
+ * moved groups are updated once at the end.
+ */
 public class ControllerLayout {
 
+	static final int MAGIC = 0x534b424c;
+
+	static final int VERSION = 1;
+
 	private Skatolo skatolo;
 
 	public static final Logger logger = Logger.getLogger(ControllerLayout.class.getName());
@@ -68,35 +94,69 @@ public class ControllerLayout {
 	}
 
 	public void save(String theLayoutPath) {
-		theLayoutPath = skatolo.checkPropertiesPath(theLayoutPath);
+		write(skatolo.checkPropertiesPath(theLayoutPath), capture());
+	}
+
+	/**
+	 * saves the layout in the background, the layout is captured on the
+	 * calling thread and the file is written by a background thread.
+	 */
+	public Future<Boolean> saveInBackground(String theLayoutPath) {
+		final String path = skatolo.checkPropertiesPath(theLayoutPath);
+		final List<ControllerLayoutElement> layoutelements = capture();
+		return Skatolo.getBackgroundExecutor().submit(new Callable<Boolean>() {
+			public Boolean call() {
+				return write(path, layoutelements);
+			}
+		});
+	}
+
+	private List<ControllerLayoutElement> capture() {
 		Class<?>[] classes = new Class<?>[] { RadioButton.class, ListBox.class, ColorPicker.class, DropdownList.class };
-		HashSet<ControllerLayoutElement> layoutelements = new HashSet<ControllerLayoutElement>();
+		List<ControllerLayoutElement> layoutelements = new ArrayList<ControllerLayoutElement>();
 		for (ControllerInterface<?> c : skatolo.getList()) {
-			if (!Arrays.asList(classes).contains(c.getParent().getClass())) {
+			// tabs are placed by their window, the items of a group are placed by the group.
+			if (!(c instanceof Tab) && !Arrays.asList(classes).contains(c.getParent().getClass())) {
 				layoutelements.add(new ControllerLayoutElement(c));
-				System.out.print(c.getAddress());
-				System.out.print(" (" + c.getName() + ") ");
-				System.out.print("\tpos:" + c.getPosition().x + "," + c.getPosition().y);
-				System.out.print("\tdim:" + c.getWidth() + "," + c.getHeight());
-				System.out.print("\tparent:" + c.getParent());
-				System.out.println("\tclass:" + c.getClass().getSimpleName());
 			}
 		}
-		try {
-			FileOutputStream fos = new FileOutputStream(theLayoutPath);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-
-			logger.info("Saving layout-items to " + theLayoutPath);
-			oos.writeInt(layoutelements.size());
+		return layoutelements;
+	}
 
-			for (ControllerLayoutElement ce : layoutelements) {
-				oos.writeObject(ce);
+	/**
+	 * writes a temporary file of its own first which replaces the layout file
+	 * once it is complete.
+	 */
+	private boolean write(String theLayoutPath, List<ControllerLayoutElement> theElements) {
+		File file = new File(theLayoutPath).getAbsoluteFile();
+		File temp = null;
+		try {
+			temp = Files.createTempFile(file.getParentFile().toPath(), file.getName() + ".", ".tmp").toFile();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				logger.info("Saving " + theElements.size() + " layout-items to " + theLayoutPath);
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				out.writeInt(theElements.size());
+				ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+				for (ControllerLayoutElement ce : theElements) {
+					ce.write(out, record);
+				}
+			} finally {
+				out.close();
 			}
-			oos.flush();
-			oos.close();
-			fos.close();
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
 		} catch (Exception e) {
-			logger.warning("Exception during serialization: " + e);
+			logger.warning("Exception during saving: " + e);
+			if (temp != null) {
+				temp.delete();
+			}
+			return false;
 		}
 	}
 
@@ -112,78 +172,204 @@ public class ControllerLayout {
 	}
 
 	public void load(String theLayoutPath) {
-		theLayoutPath = skatolo.checkPropertiesPath(theLayoutPath);
-		ArrayList<ControllerLayoutElement> list = new ArrayList<ControllerLayoutElement>();
+		List<ControllerLayoutElement> list = read(skatolo.checkPropertiesPath(theLayoutPath));
+		if (list != null) {
+			apply(list);
+		}
+	}
+
+	/**
+	 * reads the layout in the background and applies it on the animation
+	 * thread before the next frame is drawn. The returned Future tells if the
+	 * file could be read.
+	 */
+	public Future<Boolean> loadInBackground(String theLayoutPath) {
+		final String path = skatolo.checkPropertiesPath(theLayoutPath);
+		return Skatolo.getBackgroundExecutor().submit(new Callable<Boolean>() {
+			public Boolean call() {
+				final List<ControllerLayoutElement> list = read(path);
+				if (list == null) {
+					return false;
+				}
+				skatolo.invokeLater(new Runnable() {
+					public void run() {
+						apply(list);
+					}
+				});
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * reads the elements of a layout file, returns null if the file can not
+	 * be read.
+	 */
+	private List<ControllerLayoutElement> read(String theLayoutPath) {
+		List<ControllerLayoutElement> list = new ArrayList<ControllerLayoutElement>();
 		try {
-			FileInputStream fis = new FileInputStream(theLayoutPath);
-			ObjectInputStream ois = new ObjectInputStream(fis);
-			int size = ois.readInt();
-			logger.info("loading " + size + " layout-items." + fis.getFD());
-
-			for (int i = 0; i < size; i++) {
-				try {
-					ControllerLayoutElement ce = (ControllerLayoutElement) ois.readObject();
-					list.add(ce);
-				} catch (Exception e) {
-					logger.warning("skipping a property, " + e);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(theLayoutPath)));
+			try {
+				if (in.readInt() != MAGIC) {
+					logger.warning(theLayoutPath + " is not a layout file.");
+					return null;
+				}
+				int version = in.readUnsignedShort();
+				if (version > VERSION) {
+					logger.warning(theLayoutPath + " uses the unsupported version " + version + ".");
+					return null;
+				}
+				int size = in.readInt();
+				logger.info("loading " + size + " layout-items.");
+				for (int i = 0; i < size; i++) {
+					list.add(ControllerLayoutElement.read(in));
 				}
+			} finally {
+				in.close();
 			}
-			ois.close();
 		} catch (Exception e) {
-			logger.warning("Exception during deserialization: " + e);
+			logger.warning("Exception during loading: " + e);
+			return null;
 		}
+		return list;
+	}
 
-		for (ControllerLayoutElement ce : list) {
-			/*
-			ControllerInterface ci = skatolo.getController(ce.getName());
+	/**
+	 * applies the elements of a layout to the controllers with the same
+	 * address, controllers without an element are not changed.
+	 */
+	private void apply(List<ControllerLayoutElement> theElements) {
+		List<ControllerLayoutElement> elements = new ArrayList<ControllerLayoutElement>(theElements.size());
+		List<ControllerInterface<?>> controllers = new ArrayList<ControllerInterface<?>>(theElements.size());
+		for (ControllerLayoutElement ce : theElements) {
+			ControllerInterface<?> ci = skatolo.getController(ce.address);
+			ci = (ci == null) ? skatolo.getGroup(ce.address) : ci;
 			if (ci == null) {
-				try {
-					if (isClassAssignableFromSuperclass(ce.getType(), ControllerGroup.class)) {
-						ControllerGroup c = (ControllerGroup) skatolo.addGroup(null, "", ce.getName(), ce.getType(), ce.getX(), ce.getY(), ce.getWidth(), ce.getHeight());
-						c.setWidth(ce.getWidth());
-						c.setHeight(ce.getHeight());
-						if (c instanceof ListBox) {
-							System.out.println("found listbox or dropdownlist!");
-							((ListBox) c).setHeight(200);
-							((ListBox) c).setBarHeight(ce.getHeight());
-						}
-					} else {
-						Controller c = (Controller) skatolo.addController(ce.getName(), ce.getType(), ce.getX(), ce.getY());
-						c.setWidth(ce.getWidth());
-						c.setHeight(ce.getHeight());
-					}
-				} catch (Exception e) {
+				logger.warning("skipping a layout-item, " + ce.address + " does not exist.");
+				continue;
+			}
+			elements.add(ce);
+			controllers.add(ci);
+			setParent(ci, ce);
+		}
 
-				}
+		// groups first, a group passes its colors on to its controllers which
+		// are then changed to their own colors.
+		Integer[] order = new Integer[controllers.size()];
+		final int[] depth = new int[controllers.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+			depth[i] = getDepth(controllers.get(i));
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return depth[a] - depth[b];
 			}
-			ci = skatolo.get(ce.getName());
-			if (ci != null) {
-				ci.setAddress(ce.getAddress());
-				System.out.println("name:" + ce.getName() + "\tparent:" + ce.getParent() + "\telement:" + ci + "\ttype:" + ce.getType() + "\t" + ce.getHeight());
-			} else {
-				System.out.println("could not create " + ce.getName() + "," + ce.getType());
-			}
-			// if(skatolo.get(ce.getName()) instanceof DropdownList) {
-			// DropdownList dl = (DropdownList)(skatolo.get(ce.getName()));
-			// dl.setHeight(200);
-			// }
-		*/
-		}
-
-		for (ControllerLayoutElement ce : list) {
-			/*
-			ControllerInterface ci = skatolo.get(ce.getName());
-			if (ci != null) {
-				ControllerGroup g = skatolo.getGroup(ce.getParent());
-				if (g == null) {
-					g = skatolo.getTab(ce.getParent());
-				}
-				if (g != null) {
-					ci.moveTo(g);
-				}
+		});
+
+		Set<ControllerGroup<?>> moved = new HashSet<ControllerGroup<?>>();
+		for (int i : order) {
+			apply(controllers.get(i), elements.get(i), moved);
+		}
+		for (ControllerGroup<?> g : moved) {
+			if (!isInside(g, moved)) {
+				g.updateAbsolutePosition();
+			}
+		}
+	}
+
+	private void setParent(ControllerInterface<?> ci, ControllerLayoutElement ce) {
+		if (ce.parent.isEmpty()) {
+			return;
+		}
+		ControllerInterface<?> p = ci.getParent();
+		if (ce.isTab) {
+			if (!(p instanceof Tab) || !p.getName().equals(ce.parent)) {
+				Tab tab = skatolo.getTab(ce.parent);
+				ci.moveTo(null, tab, tab.getWindow());
+			}
+		} else if (p == null || p instanceof Tab || !p.getAddress().equals(ce.parent)) {
+			ControllerGroup<?> group = skatolo.getGroup(ce.parent);
+			if (group != null && group != ci) {
+				ci.moveTo(group);
+			}
+		}
+	}
+
+	private void apply(ControllerInterface<?> ci, ControllerLayoutElement ce, Set<ControllerGroup<?>> moved) {
+		PVector position = ci.getPosition();
+		if (ci instanceof ControllerGroup<?>) {
+			ControllerGroup<?> g = (ControllerGroup<?>) ci;
+			if ((int) ce.x != (int) position.x || (int) ce.y != (int) position.y) {
+				g.setRelativePosition(ce.x, ce.y);
+				moved.add(g);
+			}
+			if (g.getWidth() != ce.width) {
+				g.setWidth(ce.width);
+			}
+			if (g.getHeight() != ce.height) {
+				g.setHeight(ce.height);
+			}
+		} else if (ci instanceof Controller<?>) {
+			Controller<?> c = (Controller<?>) ci;
+			if (ce.x != position.x || ce.y != position.y) {
+				c.setPosition(ce.x, ce.y);
+			}
+			if (c.getWidth() != ce.width) {
+				c.setWidth(ce.width);
+			}
+			if (c.getHeight() != ce.height) {
+				c.setHeight(ce.height);
 			}
-			*/
 		}
+
+		if (ce.visibility == ControllerLayoutElement.VISIBLE && !ci.isVisible()) {
+			ci.show();
+		} else if (ce.visibility == ControllerLayoutElement.HIDDEN && ci.isVisible()) {
+			ci.hide();
+		}
+
+		CColor color = ci.getColor();
+		if (color.getForeground() != ce.foreground) {
+			ci.setColorForeground(ce.foreground);
+		}
+		if (color.getBackground() != ce.background) {
+			ci.setColorBackground(ce.background);
+		}
+		if (color.getActive() != ce.active) {
+			ci.setColorActive(ce.active);
+		}
+		if (color.getCaptionLabel() != ce.captionLabel) {
+			ci.setColorLabel(ce.captionLabel);
+		}
+		if (color.getValueLabel() != ce.valueLabel) {
+			ci.setColorValue(ce.valueLabel);
+		}
+	}
+
+	/**
+	 * returns the number of groups between a controller and its tab.
+	 */
+	private static int getDepth(ControllerInterface<?> ci) {
+		int depth = 0;
+		for (ControllerInterface<?> p = ci.getParent(); p != null && p != ci && !(p instanceof Tab); ci = p, p = p.getParent()) {
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * returns true if a group is inside one of theGroups, its absolute
+	 * position is then updated together with that group.
+	 */
+	private static boolean isInside(ControllerGroup<?> theGroup, Set<ControllerGroup<?>> theGroups) {
+		ControllerInterface<?> ci = theGroup;
+		for (ControllerInterface<?> p = ci.getParent(); p != null && p != ci && !(p instanceof Tab); ci = p, p = p.getParent()) {
+			if (theGroups.contains(p)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 }
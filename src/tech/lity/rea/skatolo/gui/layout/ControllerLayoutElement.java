@@ -24,29 +24,129 @@
  */
 package tech.lity.rea.skatolo.gui.layout;
 
+import tech.lity.rea.skatolo.gui.CColor;
 import tech.lity.rea.skatolo.gui.ControllerInterface;
+import tech.lity.rea.skatolo.gui.group.Tab;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * A layout element holds the position, size, parent, visibility and colors
+ * of one controller. Each element is stored as a record with its own version
+ * and length, so a reader skips the fields added by newer versions.
+ */
 public class ControllerLayoutElement implements Serializable, Cloneable {
 	
 	private static final long serialVersionUID = -5006855922546529005L;
 
-	private transient ControllerInterface<?> controller;
+	static final int VERSION = 1;
 
-	private Class<?> type;
+	static final byte HIDDEN = 0;
+	static final byte VISIBLE = 1;
+	// the parent was hidden when the layout was saved, the visibility of the
+	// controller itself is unknown and is not changed.
+	static final byte INHERITED = 2;
+
+	String address;
+	String parent;
+	boolean isTab;
+	float x;
+	float y;
+	int width;
+	int height;
+	byte visibility;
+	int foreground;
+	int background;
+	int active;
+	int captionLabel;
+	int valueLabel;
+
+	private ControllerLayoutElement() {
+	}
 
-	private Map<String,Object> values;
-	
 	ControllerLayoutElement(ControllerInterface<?> theController) {
-		controller = theController;
-		type = theController.getClass();
-		values = new HashMap<String,Object>();
+		address = theController.getAddress();
+		ControllerInterface<?> p = theController.getParent();
+		isTab = p instanceof Tab;
+		parent = (p == null || p == theController) ? "" : isTab ? p.getName() : p.getAddress();
+		x = theController.getPosition().x;
+		y = theController.getPosition().y;
+		width = theController.getWidth();
+		height = theController.getHeight();
+		if (p != null && p != theController && !p.isVisible()) {
+			visibility = INHERITED;
+		} else {
+			visibility = theController.isVisible() ? VISIBLE : HIDDEN;
+		}
+		CColor color = theController.getColor();
+		foreground = color.getForeground();
+		background = color.getBackground();
+		active = color.getActive();
+		captionLabel = color.getCaptionLabel();
+		valueLabel = color.getValueLabel();
 	}
-	
-	private void cascade(Object theObject) {
-		
+
+	public String getAddress() {
+		return address;
+	}
+
+	public String getParent() {
+		return parent;
+	}
+
+	/**
+	 * writes the element as one record, theBuffer is reused for each record.
+	 */
+	void write(DataOutputStream theOut, ByteArrayOutputStream theBuffer) throws IOException {
+		theBuffer.reset();
+		DataOutputStream record = new DataOutputStream(theBuffer);
+		record.writeUTF(address);
+		record.writeUTF(parent);
+		record.writeBoolean(isTab);
+		record.writeFloat(x);
+		record.writeFloat(y);
+		record.writeInt(width);
+		record.writeInt(height);
+		record.writeByte(visibility);
+		record.writeInt(foreground);
+		record.writeInt(background);
+		record.writeInt(active);
+		record.writeInt(captionLabel);
+		record.writeInt(valueLabel);
+		record.flush();
+		theOut.writeShort(VERSION);
+		theOut.writeInt(theBuffer.size());
+		theBuffer.writeTo(theOut);
+	}
+
+	static ControllerLayoutElement read(DataInputStream theIn) throws IOException {
+		int version = theIn.readUnsignedShort();
+		int length = theIn.readInt();
+		if (version < 1 || length < 0) {
+			throw new IOException("invalid layout record, version " + version + ", length " + length);
+		}
+		byte[] bytes = new byte[length];
+		theIn.readFully(bytes);
+		DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+		ControllerLayoutElement e = new ControllerLayoutElement();
+		e.address = record.readUTF();
+		e.parent = record.readUTF();
+		e.isTab = record.readBoolean();
+		e.x = record.readFloat();
+		e.y = record.readFloat();
+		e.width = record.readInt();
+		e.height = record.readInt();
+		e.visibility = record.readByte();
+		e.foreground = record.readInt();
+		e.background = record.readInt();
+		e.active = record.readInt();
+		e.captionLabel = record.readInt();
+		e.valueLabel = record.readInt();
+		return e;
 	}
 
-}
\ No newline at end of file
+}